@@ -7,13 +7,21 @@
  */
 package io.takari.aether.client;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 public interface AetherClient {
   Response head(String uri) throws IOException;
   Response get(String uri) throws IOException;
   Response get(String uri, Map<String,String> requestHeaders) throws IOException;
+  // the body of the response is buffered in memory, only meant for small resources like checksums
+  Future<Response> getAsync(String uri) throws IOException;
+  // the callback runs on a thread of the client and may stream the body from there, closing the returned handle cancels the request
+  Closeable getAsync(String uri, Map<String,String> requestHeaders, ResponseCallback callback) throws IOException;
+  // the request is sent once on a thread of the client, the callback gets a response without a body
+  Closeable headAsync(String uri, ResponseCallback callback) throws IOException;
   Response put(String uri, RetryableSource source) throws IOException;
   void close() throws IOException;
 }
@@ -7,7 +7,9 @@
  */
 package io.takari.aether.client;
 
+import java.io.File;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLSocketFactory;
@@ -20,6 +22,17 @@ public class AetherClientConfig {
   private AetherClientProxy proxy;
   private AetherClientAuthentication authentication;
   private Map<String,String> headers;
+  private File cacheDirectory;
+  private long cacheSize;
+  private int maxRequests;
+  private int maxRequestsPerHost;
+  private RetryPolicy retryPolicy = RetryPolicy.NONE;
+  private RequestListener requestListener = RequestListener.NONE;
+  private boolean http2 = true;
+  private boolean h2cPriorKnowledge;
+  private long pingInterval;
+  private int maxIdleConnections = 5;
+  private long keepAliveDuration = TimeUnit.MINUTES.toMillis(5);
   
   public String getUserAgent() {
     return userAgent;
@@ -69,6 +82,127 @@ public class AetherClientConfig {
     this.headers = headers;
   }
 
+  /**
+   * @return The directory of the disk cache for the responses of metadata and checksums, {@code null} if they are not cached
+   */
+  public File getCacheDirectory() {
+    return cacheDirectory;
+  }
+
+  public void setCacheDirectory(File cacheDirectory) {
+    this.cacheDirectory = cacheDirectory;
+  }
+
+  /**
+   * @return The maximum number of bytes kept in the cache directory
+   */
+  public long getCacheSize() {
+    return cacheSize;
+  }
+
+  public void setCacheSize(long cacheSize) {
+    this.cacheSize = cacheSize;
+  }
+
+  /**
+   * @return The maximum number of asynchronous requests in flight, 0 for the default of the client
+   */
+  public int getMaxRequests() {
+    return maxRequests;
+  }
+
+  public void setMaxRequests(int maxRequests) {
+    this.maxRequests = maxRequests;
+  }
+
+  /**
+   * @return The maximum number of asynchronous requests in flight to the same host, 0 for the default of the client
+   */
+  public int getMaxRequestsPerHost() {
+    return maxRequestsPerHost;
+  }
+
+  public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+    this.maxRequestsPerHost = maxRequestsPerHost;
+  }
+
+  /**
+   * @return The policy to retry requests the server answered with an error status by, requests are not retried by default
+   */
+  public RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
+  public void setRetryPolicy(RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy;
+  }
+
+  /**
+   * @return What learns about every request sent, including the retries
+   */
+  public RequestListener getRequestListener() {
+    return requestListener;
+  }
+
+  public void setRequestListener(RequestListener requestListener) {
+    this.requestListener = requestListener;
+  }
+
+  /**
+   * @return Whether HTTP/2 is offered to servers over TLS, the concurrent requests to a server then share one connection
+   */
+  public boolean isHttp2() {
+    return http2;
+  }
+
+  public void setHttp2(boolean http2) {
+    this.http2 = http2;
+  }
+
+  /**
+   * @return Whether cleartext HTTP/2 is spoken right away, without any upgrade, to a server known to support it
+   */
+  public boolean isH2cPriorKnowledge() {
+    return h2cPriorKnowledge;
+  }
+
+  public void setH2cPriorKnowledge(boolean h2cPriorKnowledge) {
+    this.h2cPriorKnowledge = h2cPriorKnowledge;
+  }
+
+  /**
+   * @return The milliseconds between pings keeping idle HTTP/2 connections alive, 0 for none
+   */
+  public long getPingInterval() {
+    return pingInterval;
+  }
+
+  public void setPingInterval(long pingInterval) {
+    this.pingInterval = pingInterval;
+  }
+
+  /**
+   * @return The maximum number of idle connections kept alive, for all the clients sharing them
+   */
+  public int getMaxIdleConnections() {
+    return maxIdleConnections;
+  }
+
+  public void setMaxIdleConnections(int maxIdleConnections) {
+    this.maxIdleConnections = maxIdleConnections;
+  }
+
+  /**
+   * @return The milliseconds an idle connection is kept alive
+   */
+  public long getKeepAliveDuration() {
+    return keepAliveDuration;
+  }
+
+  public void setKeepAliveDuration(long keepAliveDuration) {
+    this.keepAliveDuration = keepAliveDuration;
+  }
+
   //
   // for test purposes
   //
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.client;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.aether.util.ConfigUtils;
+
+/**
+ * A bounded pool of I/O buffers shared by all transfers in the JVM, so that resolving thousands of small artifacts does not
+ * allocate a fresh copy buffer for each of them. Buffers are kept in a bounded array, so that pooling them allocates nothing
+ * either. The default pool has heap buffers,
+ * which lets the stream based copies use their backing array. The direct pool is for the copies from a channel to a file
+ * channel: a heap buffer would be copied once more into a temporary direct buffer by each write to the file. Returned buffers
+ * beyond the cap on pooled memory are left to the garbage collector.
+ * <p>
+ * The pools are configured with the system properties {@code aether.connector.okhttp.bufferSize} and
+ * {@code aether.connector.okhttp.bufferPoolSize}, the maximum number of bytes kept in each pool.
+ */
+public class BufferPool {
+
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  public static final long DEFAULT_POOL_SIZE = 16 * 1024 * 1024;
+
+  private static final BufferPool DEFAULT = new BufferPool( //
+      ConfigUtils.getInteger(System.getProperties(), DEFAULT_BUFFER_SIZE, "aether.connector.okhttp.bufferSize"), //
+      ConfigUtils.getLong(System.getProperties(), DEFAULT_POOL_SIZE, "aether.connector.okhttp.bufferPoolSize"));
+
+  private static final BufferPool DIRECT = new BufferPool( //
+      DEFAULT.bufferSize, //
+      DEFAULT.maxPooled, //
+      true);
+
+  // null if not even one buffer fits in the pool
+  private final ArrayBlockingQueue<ByteBuffer> buffers;
+
+  private final AtomicLong acquired = new AtomicLong();
+
+  private final AtomicLong released = new AtomicLong();
+
+  private final int bufferSize;
+
+  private final long maxPooled;
+
+  private final boolean direct;
+
+  public BufferPool(int bufferSize, long maxPooled) {
+    this(bufferSize, maxPooled, false);
+  }
+
+  public BufferPool(int bufferSize, long maxPooled, boolean direct) {
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("Invalid buffer size " + bufferSize);
+    }
+    this.bufferSize = bufferSize;
+    this.maxPooled = maxPooled;
+    this.direct = direct;
+    long capacity = maxPooled / bufferSize;
+    this.buffers = capacity > 0 ? new ArrayBlockingQueue<ByteBuffer>((int) Math.min(capacity, Integer.MAX_VALUE)) : null;
+  }
+
+  public static BufferPool getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * @return The pool of direct buffers, for copies that neither start nor end in a byte array
+   */
+  public static BufferPool getDirect() {
+    return DIRECT;
+  }
+
+  public boolean isDirect() {
+    return direct;
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * @return The number of bytes currently held by the pool.
+   */
+  public long getPooledBytes() {
+    return buffers != null ? (long) buffers.size() * bufferSize : 0;
+  }
+
+  /**
+   * @return The number of buffers taken from the pool so far, whether pooled or allocated.
+   */
+  public long getAcquiredBuffers() {
+    return acquired.get();
+  }
+
+  /**
+   * @return The number of buffers of the pool given back so far, whether kept or not.
+   */
+  public long getReleasedBuffers() {
+    return released.get();
+  }
+
+  /**
+   * Takes a cleared buffer of {@link #getBufferSize()} bytes from the pool, or allocates one if the pool is empty. The buffer
+   * should be given back with {@link #release(ByteBuffer)} once the transfer is done with it.
+   */
+  public ByteBuffer acquire() {
+    acquired.incrementAndGet();
+    ByteBuffer buffer = buffers != null ? buffers.poll() : null;
+    if (buffer == null) {
+      return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+    }
+    buffer.clear();
+    return buffer;
+  }
+
+  public void release(ByteBuffer buffer) {
+    if (buffer == null || buffer.capacity() != bufferSize || buffer.isDirect() != direct) {
+      return;
+    }
+    released.incrementAndGet();
+    if (buffers == null) {
+      return;
+    }
+    // left to the garbage collector if the pool is full
+    buffers.offer(buffer);
+  }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.client;
+
+import java.io.IOException;
+
+/**
+ * Learns about every request the client sends as it happens, including each retry and each of the requests of a hedge, so
+ * that a server throttling us is noticed on the first refusal rather than once the retries are used up. Called on the thread
+ * that sent the request, which may be a thread of the client.
+ */
+public interface RequestListener {
+
+  RequestListener NONE = new RequestListener() {
+    @Override
+    public void answered(String method, String uri, int statusCode, long started, long latency) {}
+
+    @Override
+    public void failed(String method, String uri, IOException e, long started) {}
+  };
+
+  /**
+   * @param started When the request was sent, in {@link System#nanoTime()}
+   * @param latency The nanoseconds it took the server to answer with the headers of the response
+   */
+  void answered(String method, String uri, int statusCode, long started, long latency);
+
+  /**
+   * Not called for requests that were cancelled.
+   *
+   * @param started When the request was sent, or the connection for it was asked for, in {@link System#nanoTime()}
+   */
+  void failed(String method, String uri, IOException e, long started);
+}
@@ -10,6 +10,7 @@ package io.takari.aether.client;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
 import java.util.List;
 import java.util.Map;
 
@@ -19,5 +20,6 @@ public interface Response extends Closeable {
   String getHeader(String name);
   Map<String, List<String>> getHeaders();
   InputStream getInputStream() throws IOException;
+  ReadableByteChannel getChannel() throws IOException;
   void close();
 }
@@ -0,0 +1,23 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.client;
+
+import java.io.IOException;
+
+/**
+ * Receives the outcome of an asynchronous request, on the thread of the client that completed it.
+ */
+public interface ResponseCallback {
+
+  /**
+   * @param response The response, its body is streamed and has to be closed by the callback
+   */
+  void onResponse(Response response);
+
+  void onFailure(IOException e);
+}
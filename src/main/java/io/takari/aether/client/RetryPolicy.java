@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * When and how long to wait before a failed request is sent again. A repository manager under load that is hit with immediate
+ * retries only gets more load, so the retries back off exponentially, with a random part so that the clients it turned away
+ * at the same time do not all come back at the same time either. A {@code Retry-After} sent along with a 429 or 503 is
+ * honoured as long as it is not longer than we are willing to wait.
+ * <p>
+ * The rules differ by the kind of failure:
+ * <ul>
+ * <li>429 Too Many Requests and 503 Service Unavailable, the server asks us to come back later</li>
+ * <li>the other 5xx, which are as likely to be bugs that fail every time, so they get fewer retries</li>
+ * <li>I/O errors like timeouts and refused or dropped connections</li>
+ * </ul>
+ * Any other status is the final answer. All the retries draw on a budget, which is meant to be shared by the whole session so
+ * that a repository that is down does not hold up the build with retries for each and every artifact. Each request the server
+ * answers without an error earns back a tenth of a retry, up to the full budget, so that a long build is not left without
+ * retries by failures long past. The first retry of a connection that could not be established is granted even without a
+ * budget, the server never saw the request.
+ */
+public class RetryPolicy {
+
+  /**
+   * Never retries.
+   */
+  public static final RetryPolicy NONE = new RetryPolicy(0, 0, 0, 0, 0, 0, 0);
+
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+  private static final int HTTP_UNAVAILABLE = 503;
+
+  // the budget is kept in tenths of a retry, which is what a request that succeeds earns back
+  private static final int RETRY_COST = 10;
+
+  private static final int FREE_CONNECT_RETRIES = 1;
+
+  private final int throttledRetries;
+
+  private final int serverErrorRetries;
+
+  private final int ioRetries;
+
+  private final long initialDelay;
+
+  private final long maxDelay;
+
+  private final long maxRetryAfter;
+
+  private final int maxBudget;
+
+  private final AtomicInteger budget;
+
+  /**
+   * @param throttledRetries The maximum number of retries of a request answered with 429 or 503
+   * @param serverErrorRetries The maximum number of retries of a request answered with any other 5xx
+   * @param ioRetries The maximum number of retries of a request failed with an I/O error
+   * @param initialDelay The milliseconds to wait before the first retry, doubled for each further retry
+   * @param maxDelay The maximum milliseconds to wait before a retry
+   * @param maxRetryAfter The maximum milliseconds to wait for a {@code Retry-After}, longer ones are not retried
+   * @param budget The maximum number of retries overall
+   */
+  public RetryPolicy(int throttledRetries, int serverErrorRetries, int ioRetries, long initialDelay, long maxDelay, long maxRetryAfter, int budget) {
+    this.throttledRetries = throttledRetries;
+    this.serverErrorRetries = serverErrorRetries;
+    this.ioRetries = ioRetries;
+    this.initialDelay = initialDelay;
+    this.maxDelay = maxDelay;
+    this.maxRetryAfter = maxRetryAfter;
+    this.maxBudget = budget * RETRY_COST;
+    this.budget = new AtomicInteger(maxBudget);
+  }
+
+  /**
+   * @param statusCode The status of the response
+   * @param retryAfter The {@code Retry-After} header of the response, or {@code null}
+   * @param retry The number of the retry, starting at 1
+   * @return The milliseconds to wait before sending the request again, or -1 if it is not to be sent again
+   */
+  public long getDelay(int statusCode, String retryAfter, int retry) {
+    if (statusCode == HTTP_TOO_MANY_REQUESTS || statusCode == HTTP_UNAVAILABLE) {
+      if (retry > throttledRetries) {
+        return -1;
+      }
+      long delay = retryAfter != null ? parseRetryAfter(retryAfter) : -1;
+      if (delay > maxRetryAfter) {
+        return -1; // failing now beats hanging the build
+      }
+      return acquire() ? delay >= 0 ? delay : backoff(retry) : -1;
+    }
+    if (statusCode >= 500 && statusCode < 600) {
+      return retry <= serverErrorRetries && acquire() ? backoff(retry) : -1;
+    }
+    return -1;
+  }
+
+  /**
+   * @param e The failure of the request
+   * @param retry The number of the retry, starting at 1
+   * @return The milliseconds to wait before sending the request again, or -1 if it is not to be sent again
+   */
+  public long getDelay(IOException e, int retry) {
+    if (e instanceof InterruptedIOException && Thread.currentThread().isInterrupted()) {
+      return -1; // cancelled rather than failed
+    }
+    if (retry > ioRetries) {
+      return -1;
+    }
+    if (e instanceof ConnectException && retry <= FREE_CONNECT_RETRIES) {
+      return backoff(retry);
+    }
+    return acquire() ? backoff(retry) : -1;
+  }
+
+  /**
+   * Reports the final answer to a request, one that is neither throttled nor a failure of the server earns back part of a retry.
+   */
+  public void answered(int statusCode) {
+    if (statusCode == HTTP_TOO_MANY_REQUESTS || statusCode >= 500) {
+      return;
+    }
+    int left;
+    do {
+      left = budget.get();
+      if (left >= maxBudget) {
+        return;
+      }
+    } while (!budget.compareAndSet(left, left + 1));
+  }
+
+  private boolean acquire() {
+    int left;
+    do {
+      left = budget.get();
+      if (left < RETRY_COST) {
+        return false;
+      }
+    } while (!budget.compareAndSet(left, left - RETRY_COST));
+    return true;
+  }
+
+  /**
+   * Half of the exponential delay for sure and the other half at random.
+   */
+  private long backoff(int retry) {
+    long delay = initialDelay;
+    for (int i = 1; i < retry && delay < maxDelay; i++) {
+      delay *= 2;
+    }
+    delay = Math.min(delay, maxDelay);
+    return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+  }
+
+  /**
+   * @return The milliseconds of the {@code Retry-After}, given either in seconds or as a date, or -1 if it cannot be parsed
+   */
+  static long parseRetryAfter(String retryAfter) {
+    retryAfter = retryAfter.trim();
+    try {
+      return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(retryAfter)));
+    } catch (NumberFormatException e) {
+      // not in seconds
+    }
+    try {
+      ZonedDateTime date = ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME);
+      return Math.max(0, date.toInstant().toEpochMilli() - System.currentTimeMillis());
+    } catch (DateTimeParseException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Waits before a retry.
+   */
+  public static void sleep(long delay) throws InterruptedIOException {
+    try {
+      Thread.sleep(delay);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to retry");
+    }
+  }
+}
@@ -7,26 +7,40 @@
  */
 package io.takari.aether.connector;
 
-import java.io.BufferedOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
+import java.net.SocketException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -92,21 +106,94 @@ import io.takari.aether.client.AetherClient;
 import io.takari.aether.client.AetherClientAuthentication;
 import io.takari.aether.client.AetherClientConfig;
 import io.takari.aether.client.AetherClientProxy;
+import io.takari.aether.client.BufferPool;
+import io.takari.aether.client.RequestListener;
 import io.takari.aether.client.Response;
+import io.takari.aether.client.ResponseCallback;
+import io.takari.aether.client.RetryPolicy;
 import io.takari.aether.client.RetryableSource;
+import io.takari.aether.connector.Origins.Origin;
 import io.takari.aether.okhttp.OkHttpAetherClient;
 
 class AetherRepositoryConnector implements RepositoryConnector {
 
-  private static final Map<String, String> checksumAlgos;
-  
+  private static final String DEFAULT_CHECKSUM_ALGOS = "SHA-1,MD5";
+
+  private static final Map<String, String> checksumExtensions;
+
+  static {
+    LinkedHashMap<String, String> _checksumExtensions = new LinkedHashMap<>();
+    _checksumExtensions.put("SHA-512", ".sha512");
+    _checksumExtensions.put("SHA-256", ".sha256");
+    _checksumExtensions.put("SHA-1", ".sha1");
+    _checksumExtensions.put("MD5", ".md5");
+    checksumExtensions = Collections.unmodifiableMap(_checksumExtensions);
+  }
+
+  //
+  // Repository managers and CDNs commonly send the checksums of an artifact along with it, which saves us the request for the
+  // checksum file. The header name is mapped to the checksum algorithm.
+  //
+  private static final Map<String, String> checksumHeaders;
+
   static {
-    LinkedHashMap<String, String> _checksumAlgos = new LinkedHashMap<>();
-    _checksumAlgos.put("SHA-1", ".sha1");
-    _checksumAlgos.put("MD5", ".md5");
-    checksumAlgos = Collections.unmodifiableMap(_checksumAlgos);
+    LinkedHashMap<String, String> _checksumHeaders = new LinkedHashMap<>();
+    _checksumHeaders.put("X-Checksum-Sha256", "SHA-256");
+    _checksumHeaders.put("X-Checksum-Sha1", "SHA-1");
+    _checksumHeaders.put("x-goog-meta-checksum-sha1", "SHA-1");
+    _checksumHeaders.put("X-Checksum-MD5", "MD5");
+    checksumHeaders = Collections.unmodifiableMap(_checksumHeaders);
   }
 
+  private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+  //
+  // The sizes we expect of the artifacts we have not seen yet, by extension. They only decide which downloads start first, see
+  // GetTask.getPriority(), and anything not listed is expected to be a typical jar.
+  //
+  private static final long DEFAULT_EXPECTED_SIZE = 256 * 1024;
+
+  private static final Map<String, Long> expectedSizes;
+
+  static {
+    LinkedHashMap<String, Long> _expectedSizes = new LinkedHashMap<>();
+    _expectedSizes.put(".pom", 8L * 1024);
+    _expectedSizes.put(".asc", 1L * 1024);
+    _expectedSizes.put(".xml", 8L * 1024);
+    _expectedSizes.put(".zip", 32L * 1024 * 1024);
+    _expectedSizes.put(".war", 32L * 1024 * 1024);
+    _expectedSizes.put(".ear", 32L * 1024 * 1024);
+    _expectedSizes.put(".tar.gz", 32L * 1024 * 1024);
+    _expectedSizes.put(".tgz", 32L * 1024 * 1024);
+    _expectedSizes.put(".tar.bz2", 32L * 1024 * 1024);
+    expectedSizes = Collections.unmodifiableMap(_expectedSizes);
+  }
+
+  private static final Comparator<TransferScheduler.Prioritized> BY_PRIORITY = new Comparator<TransferScheduler.Prioritized>() {
+    @Override
+    public int compare(TransferScheduler.Prioritized o1, TransferScheduler.Prioritized o2) {
+      long p1 = o1.getPriority();
+      long p2 = o2.getPriority();
+      return p1 > p2 ? -1 : p1 < p2 ? 1 : 0;
+    }
+  };
+
+  private static final int HTTP_NOT_MODIFIED = 304;
+
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+  // the delay of hedged requests until the latency of the host is known
+  private static final long DEFAULT_HEDGE_DELAY = 1000;
+
+  private static final int MAX_HEDGED_REQUESTS = 256;
+
+  private static final long DEFAULT_CACHE_SIZE = 50 * 1024 * 1024;
+
+  // enough to keep a connection per transfer to a host running at once, see aether.connector.okhttp.maxTransfersPerHost
+  private static final int DEFAULT_MAX_IDLE_CONNECTIONS = 16;
+
+  private static final long DEFAULT_KEEP_ALIVE_DURATION = TimeUnit.MINUTES.toMillis(5);
+
   private final Logger logger = LoggerFactory.getLogger(AetherRepositoryConnector.class);
   
   private final RepositoryLayout layout;
@@ -116,8 +203,70 @@ class AetherRepositoryConnector implements RepositoryConnector {
 
   private final AetherClient aetherClient;
 
+  private final RetryPolicy retryPolicy;
+
   private final int maxThreads;
+  // the limits of the transfers of all connectors running at once while those of this one start, see TransferScheduler
+  private final int maxTransfers;
+  private final int maxTransfersPerHost;
+  private final boolean adaptiveTransfers;
   private Executor executor;
+  private final TransferScheduler scheduler = TransferScheduler.INSTANCE;
+
+  // runs the transfers on virtual threads instead of the pool if enabled and supported by the runtime, they are still
+  // started by the scheduler within its limits
+  private final Executor virtualThreadExecutor;
+  private final int virtualThreadPermits;
+
+  // whether downloads are started asynchronously and run on the threads of the client, which limits the requests per host
+  private final boolean async;
+
+  private final int segments;
+  private final long segmentThreshold;
+  private ExecutorService segmentExecutor;
+
+  private final BufferPool bufferPool = BufferPool.getDefault();
+
+  // the data of progress events that only report how many bytes were transferred
+  private static final ByteBuffer NO_DATA = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
+  // the buffers the bodies of downloads are read into and written to their file from
+  private final BufferPool directBufferPool = BufferPool.getDirect();
+
+  private final InFlightDownloads inFlightDownloads = InFlightDownloads.INSTANCE;
+
+  // whether downloads are coordinated with other processes sharing the local repository, see DownloadLock
+  private final boolean fileLocks;
+  private final long fileLockTimeout;
+  private final long fileLockStaleTime;
+
+  // whether metadata is requested conditionally, with the validators of the copy we already have, see MetadataValidators
+  private final boolean conditionalMetadata;
+
+  // the artifacts the repository is known not to have, null unless enabled
+  private final NotFoundCache notFoundCache;
+
+  // whether a GET answered late is sent again, see HedgedGet, after a fixed delay or the usual latency of the host, and where to
+  private final boolean hedging;
+  private final long hedgeDelay;
+  private final String hedgeUrl;
+  private final HostLatency hostLatency;
+
+  // where the content of the repository is available from, its own URL and the alternatives configured for it
+  private final Origins origins;
+
+  // the connections to the repository opened in the background when the connector is created, see #warmUp()
+  private final int warmUpConnections;
+
+  // the checksum algorithms in order of preference, mapped to the extension of their checksum files
+  private final Map<String, String> checksumAlgos;
+
+  // the extension of the checksum requested along with the artifact, that of the first algorithm this JVM can verify
+  private final String prefetchedChecksum;
+
+  // progress events are coalesced until this many bytes were transferred or this many nanoseconds passed, if any
+  private final int progressBytes;
+  private final long progressInterval;
 
   class FileSource implements RetryableSource {
 
@@ -129,6 +278,9 @@ class AetherRepositoryConnector implements RepositoryConnector {
 
     private final Transfer transfer;
 
+    // the checksums to upload along with the file are calculated while it is sent
+    private final ChecksumCalculator checksums = new ChecksumCalculator(checksumAlgos.keySet());
+
     public FileSource(Transfer transfer, TransferResource transferResource) {
       this.transfer = transfer;
       this.resource = transferResource;
@@ -140,14 +292,22 @@ class AetherRepositoryConnector implements RepositoryConnector {
       try {
         InputStream is = closer.register(new FileInputStream(resource.getFile()));
         closer.register(os);
+        checksums.reset();
+        bytesTransferred = 0;
         int n = 0;
-        final byte[] buffer = new byte[4 * 1024];
-        while (-1 != (n = is.read(buffer))) {
-          os.write(buffer, 0, n);
-          transferProgressed(transfer, newEvent(resource, null, RequestType.PUT,
-              EventType.PROGRESSED).setTransferredBytes(bytesTransferred)
-              .setDataBuffer(buffer, 0, n).build());
-          bytesTransferred = bytesTransferred + n;
+        final ByteBuffer buffer = bufferPool.acquire();
+        TransferProgress progress = new TransferProgress(transfer, resource, RequestType.PUT, true, 0);
+        try {
+          while (-1 != (n = is.read(buffer.array(), 0, buffer.capacity()))) {
+            os.write(buffer.array(), 0, n);
+            checksums.update(buffer.array(), 0, n);
+            progress.progressed(buffer.array(), 0, n);
+            bytesTransferred = bytesTransferred + n;
+          }
+          progress.flush();
+        } finally {
+          progress.close();
+          bufferPool.release(buffer);
         }
       } catch (TransferCancelledException e) {
         this.exception = e;
@@ -168,6 +328,131 @@ class AetherRepositoryConnector implements RepositoryConnector {
     public long getBytesTransferred() {
       return bytesTransferred;
     }
+
+    /**
+     * @return The checksums of the file as it was sent, or {@code null} if it was not sent completely
+     */
+    public Map<String, Object> getChecksums() {
+      return checksums.getLength() == length() ? checksums.getChecksums() : null;
+    }
+  }
+
+  /**
+   * Reports the progress of a transfer to its listener. A slow listener like a console progress bar does not need an event for
+   * every chunk that is read or written, so chunks are coalesced into one event until {@link #progressBytes} bytes were
+   * transferred or {@link #progressInterval} passed. With a number of bytes the coalesced chunks are copied, so the data
+   * buffers of the events still add up to the whole content. Coalescing by time alone could take any amount of data, so its
+   * events only report the number of bytes transferred and have an empty data buffer. Nothing at all is done when the
+   * transfer has no listener.
+   */
+  class TransferProgress {
+
+    private final Transfer transfer;
+
+    private final TransferResource resource;
+
+    private final RequestType requestType;
+
+    private final boolean enabled;
+
+    private final boolean coalesced;
+
+    private long transferredBytes;
+
+    private long lastEvent = System.nanoTime();
+
+    // the bytes transferred but not reported yet
+    private long pendingBytes;
+
+    // the copy of these bytes when coalescing by their number, taken from the pool when first needed and when it fits
+    private ByteBuffer pending;
+
+    TransferProgress(Transfer transfer, TransferResource resource, RequestType requestType, boolean enabled, long transferredBytes) {
+      this.transfer = transfer;
+      this.resource = resource;
+      this.requestType = requestType;
+      this.enabled = enabled && transfer.getListener() != null;
+      this.coalesced = progressBytes > 0 || progressInterval > 0;
+      this.transferredBytes = transferredBytes;
+    }
+
+    public void progressed(byte[] buffer, int offset, int length) throws TransferCancelledException {
+      if (enabled) {
+        progressed(ByteBuffer.wrap(buffer, offset, length));
+      }
+    }
+
+    /**
+     * Reports the remaining content of the buffer, the position of the buffer is left unchanged.
+     */
+    public void progressed(ByteBuffer buffer) throws TransferCancelledException {
+      if (!enabled) {
+        return;
+      }
+      if (!coalesced || pendingBytes == 0 && progressBytes > 0 && buffer.remaining() >= progressBytes) {
+        // nothing to coalesce with, the chunk is reported as is
+        fire(buffer, buffer.remaining());
+        return;
+      }
+      if (progressBytes > 0) {
+        if (pending == null) {
+          pending = progressBytes <= bufferPool.getBufferSize() ? bufferPool.acquire() : ByteBuffer.allocate(progressBytes);
+          pending.limit(progressBytes);
+        }
+        ByteBuffer chunk = buffer.duplicate();
+        while (chunk.hasRemaining()) {
+          int limit = chunk.limit();
+          int n = Math.min(chunk.remaining(), pending.remaining());
+          chunk.limit(chunk.position() + n);
+          pending.put(chunk);
+          chunk.limit(limit);
+          pendingBytes += n;
+          if (!pending.hasRemaining()) {
+            flush();
+          }
+        }
+      } else {
+        pendingBytes += buffer.remaining();
+      }
+      if (progressInterval > 0 && System.nanoTime() - lastEvent >= progressInterval) {
+        flush();
+      }
+    }
+
+    /**
+     * Reports the chunks that were coalesced so far.
+     */
+    public void flush() throws TransferCancelledException {
+      if (pendingBytes == 0) {
+        return;
+      }
+      ByteBuffer data = pending != null ? (ByteBuffer) pending.flip() : NO_DATA;
+      try {
+        fire(data, pendingBytes);
+      } finally {
+        pendingBytes = 0;
+        if (pending != null) {
+          pending.clear();
+          pending.limit(progressBytes);
+        }
+      }
+    }
+
+    /**
+     * Gives the buffer back to the pool, anything not flushed is not reported.
+     */
+    public void close() {
+      if (pending != null) {
+        bufferPool.release(pending);
+        pending = null;
+      }
+    }
+
+    private void fire(ByteBuffer data, long bytes) throws TransferCancelledException {
+      transferredBytes += bytes;
+      lastEvent = System.nanoTime();
+      transferProgressed(transfer, newEvent(resource, null, requestType, EventType.PROGRESSED).setTransferredBytes(transferredBytes).setDataBuffer(data).build());
+    }
   }
 
   public AetherRepositoryConnector(RemoteRepository repository, RepositorySystemSession session, FileProcessor fileProcessor) throws NoRepositoryConnectorException {
@@ -197,11 +482,152 @@ class AetherRepositoryConnector implements RepositoryConnector {
     }
 
     this.maxThreads = ConfigUtils.getInteger(session, 5, "aether.connector.basic.threads", "maven.artifact.threads");
-    this.aetherClient = newAetherClient(repository, session, sslSocketFactory);
+    this.virtualThreadPermits = ConfigUtils.getInteger(session, 64, "aether.connector.okhttp.virtualThreadPermits." + repository.getId(), "aether.connector.okhttp.virtualThreadPermits");
+    this.virtualThreadExecutor = newVirtualThreadExecutor(repository, session);
+    this.maxTransfers = ConfigUtils.getInteger(session, 64, "aether.connector.okhttp.maxTransfers");
+    this.maxTransfersPerHost = ConfigUtils.getInteger(session, 16, "aether.connector.okhttp.maxTransfersPerHost");
+    this.adaptiveTransfers = ConfigUtils.getBoolean(session, false, "aether.connector.okhttp.adaptiveTransfers");
+    this.async = isAsync(repository, session);
+    this.segments = ConfigUtils.getInteger(session, 1, "aether.connector.okhttp.segments." + repository.getId(), "aether.connector.okhttp.segments");
+    this.segmentThreshold = ConfigUtils.getLong(session, 32 * 1024 * 1024, "aether.connector.okhttp.segmentThreshold." + repository.getId(), "aether.connector.okhttp.segmentThreshold");
+    this.progressBytes = ConfigUtils.getInteger(session, 64 * 1024, "aether.connector.okhttp.progressBytes." + repository.getId(), "aether.connector.okhttp.progressBytes");
+    this.progressInterval = TimeUnit.MILLISECONDS.toNanos(ConfigUtils.getLong(session, 0, "aether.connector.okhttp.progressInterval." + repository.getId(), "aether.connector.okhttp.progressInterval"));
+    this.fileLocks = ConfigUtils.getBoolean(session, false, "aether.connector.okhttp.fileLocks." + repository.getId(), "aether.connector.okhttp.fileLocks");
+    this.fileLockTimeout = ConfigUtils.getLong(session, TimeUnit.MINUTES.toMillis(10), "aether.connector.okhttp.fileLockTimeout");
+    this.fileLockStaleTime = ConfigUtils.getLong(session, TimeUnit.MINUTES.toMillis(1), "aether.connector.okhttp.fileLockStaleTime");
+    this.conditionalMetadata = ConfigUtils.getBoolean(session, true, "aether.connector.okhttp.conditionalMetadata." + repository.getId(), "aether.connector.okhttp.conditionalMetadata");
+    this.notFoundCache = newNotFoundCache(repository, session);
+    this.hedging = isHedging(repository, session);
+    this.hedgeDelay = ConfigUtils.getLong(session, 0, "aether.connector.okhttp.hedgeDelay." + repository.getId(), "aether.connector.okhttp.hedgeDelay");
+    this.hedgeUrl = ConfigUtils.getString(session, null, "aether.connector.okhttp.hedgeUrl." + repository.getId());
+    this.hostLatency = HostLatency.get(repository.getHost());
+    this.origins = new Origins(repository.getUrl(), getAlternativeOrigins(repository, session));
+    this.warmUpConnections = ConfigUtils.getInteger(session, 0, "aether.connector.okhttp.warmUpConnections." + repository.getId(), "aether.connector.okhttp.warmUpConnections");
+    String algos = ConfigUtils.getString(session, DEFAULT_CHECKSUM_ALGOS, "aether.connector.okhttp.checksums." + repository.getId(), "aether.connector.okhttp.checksums");
+    Map<String, String> checksumAlgos = getChecksumAlgos(algos);
+    String prefetchedChecksum = getSupportedExtension(checksumAlgos);
+    if (prefetchedChecksum == null) {
+      // nothing could be verified, not even with a checksum policy that fails
+      logger.warn("None of the checksum algorithms '" + algos + "' configured for " + repository.getId() + " is supported, using " + DEFAULT_CHECKSUM_ALGOS + " instead");
+      checksumAlgos = getChecksumAlgos(DEFAULT_CHECKSUM_ALGOS);
+      prefetchedChecksum = getSupportedExtension(checksumAlgos);
+    }
+    this.checksumAlgos = checksumAlgos;
+    this.prefetchedChecksum = prefetchedChecksum;
+    this.retryPolicy = getRetryPolicy(session);
+    this.aetherClient = newAetherClient(repository, session, sslSocketFactory, retryPolicy, new RequestObserver());
+  }
+
+  /**
+   * Parses a comma separated list of checksum algorithms like {@code SHA-512,SHA-1}. The checksum files of algorithms we do not
+   * know of are expected to be named after the algorithm, e.g. {@code .sha384} for {@code SHA-384}.
+   */
+  static Map<String, String> getChecksumAlgos(String algos) {
+    LinkedHashMap<String, String> checksumAlgos = new LinkedHashMap<>();
+    for (String algo : algos.split(",")) {
+      algo = algo.trim().toUpperCase(Locale.ENGLISH);
+      if (algo.isEmpty()) {
+        continue;
+      }
+      String ext = checksumExtensions.get(algo);
+      checksumAlgos.put(algo, ext != null ? ext : "." + algo.replace("-", "").toLowerCase(Locale.ENGLISH));
+    }
+    return Collections.unmodifiableMap(checksumAlgos);
+  }
+
+  /**
+   * @return The extension of the checksum files of the first of the algorithms this JVM supports, or {@code null} if none is
+   */
+  private static String getSupportedExtension(Map<String, String> algos) {
+    for (Map.Entry<String, String> algo : algos.entrySet()) {
+      try {
+        MessageDigest.getInstance(algo.getKey());
+        return algo.getValue();
+      } catch (NoSuchAlgorithmException e) {
+        // try the next one
+      }
+    }
+    return null;
+  }
+
+  private Executor newVirtualThreadExecutor(RemoteRepository repository, RepositorySystemSession session) {
+    if (!ConfigUtils.getBoolean(session, false, "aether.connector.okhttp.virtualThreads." + repository.getId(), "aether.connector.okhttp.virtualThreads")) {
+      return null;
+    }
+    Executor executor = VirtualThreadExecutor.newInstance(getClass().getSimpleName() + '-' + repository.getHost() + "-virtual-", virtualThreadPermits);
+    if (executor == null) {
+      logger.debug("Virtual threads are not supported by this Java runtime, using a pool of " + maxThreads + " threads");
+    }
+    return executor;
+  }
+
+  private static NotFoundCache newNotFoundCache(RemoteRepository repository, RepositorySystemSession session) {
+    if (!ConfigUtils.getBoolean(session, false, "aether.connector.okhttp.notFoundCache." + repository.getId(), "aether.connector.okhttp.notFoundCache")
+        || session.getLocalRepository() == null) {
+      return null;
+    }
+    if (!getAlternativeOrigins(repository, session).isEmpty()) {
+      // a 404 of one of several origins may only mean that it lags behind the others
+      return null;
+    }
+    // the repository is identified by its URL as well, ids are commonly reused for different repositories
+    String name = repository.getId().replaceAll("[^\\w.-]", "_") + "-" + Integer.toHexString(repository.getUrl().hashCode()) + ".notfound";
+    File file = new File(session.getLocalRepository().getBasedir(), ".cache/okhttp/" + name);
+    return NotFoundCache.get(file, //
+        ConfigUtils.getLong(session, TimeUnit.HOURS.toMillis(24), "aether.connector.okhttp.notFoundTtl." + repository.getId(), "aether.connector.okhttp.notFoundTtl"), //
+        ConfigUtils.getLong(session, TimeUnit.HOURS.toMillis(1), "aether.connector.okhttp.notFoundSnapshotTtl." + repository.getId(), "aether.connector.okhttp.notFoundSnapshotTtl"), //
+        ConfigUtils.getInteger(session, 10000, "aether.connector.okhttp.notFoundEntries"), //
+        0.000001);
+  }
+
+  /**
+   * @return The retry policy of the session, all its connectors draw on the same budget of retries
+   */
+  private static RetryPolicy getRetryPolicy(RepositorySystemSession session) {
+    Object key = RetryPolicy.class.getName();
+    RetryPolicy retryPolicy = (RetryPolicy) session.getData().get(key);
+    if (retryPolicy == null) {
+      retryPolicy = new RetryPolicy( //
+          ConfigUtils.getInteger(session, 4, "aether.connector.okhttp.throttledRetries"), //
+          ConfigUtils.getInteger(session, 2, "aether.connector.okhttp.serverErrorRetries"), //
+          ConfigUtils.getInteger(session, 3, "aether.connector.okhttp.ioRetries"), //
+          ConfigUtils.getLong(session, 200, "aether.connector.okhttp.retryDelay"), //
+          ConfigUtils.getLong(session, TimeUnit.SECONDS.toMillis(10), "aether.connector.okhttp.retryMaxDelay"), //
+          ConfigUtils.getLong(session, TimeUnit.SECONDS.toMillis(60), "aether.connector.okhttp.retryMaxRetryAfter"), //
+          ConfigUtils.getInteger(session, 100, "aether.connector.okhttp.retryBudget"));
+      if (!session.getData().set(key, null, retryPolicy)) {
+        retryPolicy = (RetryPolicy) session.getData().get(key);
+      }
+    }
+    return retryPolicy;
+  }
+
+  /**
+   * @return The URLs of the same content as the repository, from a comma separated list
+   */
+  private static List<String> getAlternativeOrigins(RemoteRepository repository, RepositorySystemSession session) {
+    List<String> urls = new ArrayList<>();
+    for (String url : ConfigUtils.getString(session, "", "aether.connector.okhttp.origins." + repository.getId()).split(",")) {
+      if (!url.trim().isEmpty()) {
+        urls.add(url.trim());
+      }
+    }
+    return urls;
+  }
+
+  private static boolean isAsync(RemoteRepository repository, RepositorySystemSession session) {
+    return ConfigUtils.getBoolean(session, false, "aether.connector.okhttp.async." + repository.getId(), "aether.connector.okhttp.async");
+  }
+
+  // not with asynchronous downloads, their requests would wait for the hedge on a thread of the client, holding a request
+  // the hedge may have to wait for in turn
+  private static boolean isHedging(RemoteRepository repository, RepositorySystemSession session) {
+    return ConfigUtils.getBoolean(session, false, "aether.connector.okhttp.hedging." + repository.getId(), "aether.connector.okhttp.hedging")
+        && !isAsync(repository, session);
   }
 
   private static OkHttpAetherClient newAetherClient(RemoteRepository repository, RepositorySystemSession session,
-      SSLSocketFactory sslSocketFactory) {
+      SSLSocketFactory sslSocketFactory, RetryPolicy retryPolicy, RequestListener requestListener) {
     AetherClientConfig config = new AetherClientConfig();
 
     Map<String, String> commonHeaders = new HashMap<>();
@@ -282,26 +708,175 @@ class AetherRepositoryConnector implements RepositoryConnector {
     config.setRequestTimeout(readTimeout);
     config.setSslSocketFactory(sslSocketFactory);
 
+    config.setRetryPolicy(retryPolicy);
+    config.setRequestListener(requestListener);
+
+    //
+    // HTTP/2, negotiated over TLS unless disabled, and spoken right away to cleartext servers known to support it (h2c)
+    //
+    config.setHttp2(ConfigUtils.getBoolean(session, true, "aether.connector.okhttp.http2." + repository.getId(), "aether.connector.okhttp.http2"));
+    config.setH2cPriorKnowledge("http".equalsIgnoreCase(repository.getProtocol())
+        && ConfigUtils.getBoolean(session, false, "aether.connector.okhttp.h2c." + repository.getId(), "aether.connector.okhttp.h2c"));
+    config.setPingInterval(ConfigUtils.getLong(session, 0, "aether.connector.okhttp.pingInterval." + repository.getId(), "aether.connector.okhttp.pingInterval"));
+    // the idle connections are kept in a pool shared by all connectors configured alike
+    config.setMaxIdleConnections(ConfigUtils.getInteger(session, DEFAULT_MAX_IDLE_CONNECTIONS, "aether.connector.okhttp.maxIdleConnections"));
+    config.setKeepAliveDuration(ConfigUtils.getLong(session, DEFAULT_KEEP_ALIVE_DURATION, "aether.connector.okhttp.keepAliveDuration"));
+    // hedged requests are sent asynchronously, the transfers running at once are limited by the scheduler already
+    int defaultMaxRequests = isHedging(repository, session) ? MAX_HEDGED_REQUESTS : 0;
+    config.setMaxRequests(ConfigUtils.getInteger(session, defaultMaxRequests, "aether.connector.okhttp.maxRequests"));
+    config.setMaxRequestsPerHost(ConfigUtils.getInteger(session, defaultMaxRequests, "aether.connector.okhttp.maxRequestsPerHost." + repository.getId(), "aether.connector.okhttp.maxRequestsPerHost"));
+
+    //
+    // Optional disk cache for metadata and checksums, so that builds on the same machine share what they learned about them
+    //
+    String cacheDirectory = ConfigUtils.getString(session, null, "aether.connector.okhttp.cacheDirectory." + repository.getId(), "aether.connector.okhttp.cacheDirectory");
+    if (cacheDirectory != null) {
+      config.setCacheDirectory(new File(cacheDirectory));
+      config.setCacheSize(ConfigUtils.getLong(session, DEFAULT_CACHE_SIZE, "aether.connector.okhttp.cacheSize." + repository.getId(), "aether.connector.okhttp.cacheSize"));
+    }
+
     return new OkHttpAetherClient(config);
   }
 
-  private Executor getExecutor(Collection<?> artifacts, Collection<?> metadatas) {
-    if (maxThreads <= 1) {
-      return DirectExecutor.INSTANCE;
+  /**
+   * Gets the resource from the best of the origins of the repository, hedged if enabled. A failed or erroneous origin is left
+   * for the next one as long as there is one to try. How the hosts answer each of the requests is kept track of by the
+   * {@link RequestObserver}.
+   */
+  private Response observedGet(String uri, Map<String, String> requestHeaders) throws IOException {
+    List<Origin> failed = new ArrayList<>();
+    while (true) {
+      Origin origin = origins.select(failed);
+      String originUri = origins.resolve(origin, uri);
+      Response response;
+      try {
+        if (hedging) {
+          response = new HedgedGet(aetherClient, requestHeaders).get(originUri, getHedgeUri(uri, origin), getHedgeDelay());
+        } else {
+          response = requestHeaders.isEmpty() ? aetherClient.get(originUri) : aetherClient.get(originUri, requestHeaders);
+        }
+      } catch (IOException e) {
+        origin.failed();
+        failed.add(origin);
+        if (failed.size() < origins.size() && !Thread.currentThread().isInterrupted()) {
+          logger.debug("Failed to get " + originUri + ", trying another origin: " + e.getMessage());
+          continue;
+        }
+        throw e;
+      }
+      int statusCode = response.getStatusCode();
+      if (statusCode >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+        origin.failed();
+        failed.add(origin);
+        if (failed.size() < origins.size()) {
+          logger.debug("Failed to get " + originUri + " with status code " + statusCode + ", trying another origin");
+          response.close();
+          continue;
+        }
+      }
+      return response;
+    }
+  }
+
+  /**
+   * Learns from every request the client sends for a download, each retry and each request of a hedge on its own and timed
+   * from the moment it was sent. The scheduler adapts the transfers running at once to the host, and sees the host throttle us
+   * on the first refusal rather than once the retries are used up. Hedged requests wait about as long as the host usually
+   * takes, and the origins that answer faster are preferred.
+   */
+  private class RequestObserver implements RequestListener {
+
+    @Override
+    public void answered(String method, String uri, int statusCode, long started, long latency) {
+      if (!"GET".equals(method)) {
+        return; // uploads take as long as their content, and warming up as long as connecting
+      }
+      // charged to the origin that answered, a throttling mirror is no reason to hold back the others
+      String host = getHost(uri);
+      if (statusCode == HTTP_TOO_MANY_REQUESTS || statusCode == HttpURLConnection.HTTP_UNAVAILABLE) {
+        if (adaptiveTransfers) {
+          scheduler.throttled(host, started);
+        }
+      } else if (statusCode < HttpURLConnection.HTTP_INTERNAL_ERROR) {
+        if (adaptiveTransfers) {
+          scheduler.answered(host, started, latency, maxTransfersPerHost);
+        }
+        Origin origin = origins.get(uri);
+        if (origin != null) {
+          origin.succeeded(latency);
+        }
+        if (host.equals(repository.getHost())) {
+          hostLatency.add(latency);
+        }
+      }
+    }
+
+    @Override
+    public void failed(String method, String uri, IOException e, long started) {
+      if (adaptiveTransfers && "GET".equals(method) && e instanceof SocketException) {
+        // most likely reset by a host that has enough of us
+        scheduler.throttled(getHost(uri), started);
+      }
     }
+
+    /**
+     * @return The host of the request, spelled like that of the repository if it is the same
+     */
+    private String getHost(String uri) {
+      String host = URI.create(uri).getHost();
+      return host == null || host.equalsIgnoreCase(repository.getHost()) ? repository.getHost() : host;
+    }
+  }
+
+  /**
+   * @return The nanoseconds to wait for an answer before the request is sent again
+   */
+  private long getHedgeDelay() {
+    if (hedgeDelay > 0) {
+      return TimeUnit.MILLISECONDS.toNanos(hedgeDelay);
+    }
+    long p95 = hostLatency.getPercentile(95);
+    return p95 >= 0 ? p95 : TimeUnit.MILLISECONDS.toNanos(DEFAULT_HEDGE_DELAY);
+  }
+
+  /**
+   * @return Where to send the request for the given resource again, the mirror if there is one, or another origin of the
+   *         repository than the one the request went to
+   */
+  private String getHedgeUri(String uri, Origin origin) {
+    String base = buildUrl(repository.getUrl(), "");
+    if (hedgeUrl != null && uri.startsWith(base)) {
+      return buildUrl(hedgeUrl, uri.substring(base.length()));
+    }
+    Origin other = origins.select(Collections.singleton(origin));
+    return origins.resolve(other != null ? other : origin, uri);
+  }
+
+  private Executor getExecutor(Collection<?> artifacts, Collection<?> metadatas) {
     int tasks = safe(artifacts).size() + safe(metadatas).size();
     if (tasks <= 1) {
       return DirectExecutor.INSTANCE;
     }
+    if (virtualThreadExecutor == null && maxThreads <= 1) {
+      return DirectExecutor.INSTANCE;
+    }
     if (executor == null) {
-      executor = new ThreadPoolExecutor(maxThreads, maxThreads, 3L, TimeUnit.SECONDS,
-                      new LinkedBlockingQueue<Runnable>(),
-                      new WorkerThreadFactory( getClass().getSimpleName() + '-' + repository.getHost() + '-' )
-      );
+      // the threads are shared with all connectors, at most maxThreads of them run the transfers of this one. Virtual threads
+      // are started for the transfers instead if enabled, up to their permits and within the same limits overall and per host.
+      executor = virtualThreadExecutor != null //
+          ? scheduler.newQueue(repository.getHost(), virtualThreadPermits, maxTransfers, maxTransfersPerHost, adaptiveTransfers, virtualThreadExecutor)
+          : scheduler.newQueue(repository.getHost(), maxThreads, maxTransfers, maxTransfersPerHost, adaptiveTransfers, null);
     }
     return executor;
   }
 
+  private synchronized ExecutorService getSegmentExecutor() {
+    if (segmentExecutor == null) {
+      segmentExecutor = Executors.newCachedThreadPool(new WorkerThreadFactory(getClass().getSimpleName() + '-' + repository.getHost() + "-segment-"));
+    }
+    return segmentExecutor;
+  }
+
   /**
    * Download artifacts and metadata.
    *
@@ -314,21 +889,26 @@ class AetherRepositoryConnector implements RepositoryConnector {
 
     CountDownLatch latch = new CountDownLatch(artifactDownloads.size() + metadataDownloads.size());
 
-    Collection<GetTask<?>> tasks = new ArrayList<GetTask<?>>();
+    List<GetTask<?>> tasks = new ArrayList<GetTask<?>>();
     Executor executor = getExecutor(artifactDownloads, metadataDownloads);
 
     for (MetadataDownload download : metadataDownloads) {
       String resource = layout.getLocation(download.getMetadata(), false).getPath();
-      GetTask<?> task = new GetTask<MetadataTransfer>(resource, download.getFile(), download.getChecksumPolicy(), latch, download, METADATA);
-      tasks.add(task);
-      executor.execute(task);
+      tasks.add(new GetTask<MetadataTransfer>(resource, download.getFile(), download.getChecksumPolicy(), latch, download, METADATA));
     }
 
     for (ArtifactDownload download : artifactDownloads) {
       String resource = layout.getLocation(download.getArtifact(), false).getPath();
-      GetTask<?> task = new GetTask<ArtifactTransfer>(resource, download.isExistenceCheck() ? null : download.getFile(), download.getChecksumPolicy(), latch, download, ARTIFACT);
-      tasks.add(task);
-      executor.execute(task);
+      tasks.add(new GetTask<ArtifactTransfer>(resource, download.isExistenceCheck() ? null : download.getFile(), download.getChecksumPolicy(), latch, download, ARTIFACT));
+    }
+
+    // the first tasks get the threads that are available right away
+    List<GetTask<?>> queue = new ArrayList<GetTask<?>>(tasks);
+    Collections.sort(queue, BY_PRIORITY);
+    for (GetTask<?> task : queue) {
+      if (!async || !task.enqueue()) {
+        executor.execute(task);
+      }
     }
 
     await(latch);
@@ -414,7 +994,7 @@ class AetherRepositoryConnector implements RepositoryConnector {
     return event;
   }
 
-  class GetTask<T extends Transfer> implements Runnable {
+  class GetTask<T extends Transfer> implements Runnable, TransferScheduler.Prioritized {
 
     private final T download;
     private final String path;
@@ -423,6 +1003,20 @@ class AetherRepositoryConnector implements RepositoryConnector {
     private final LatchGuard latch;
     private volatile Exception exception;
     private final ExceptionWrapper<T> wrapper;
+    private Future<Response> checksumResponse;
+    private Map<String, String> expectedChecksums = Collections.emptyMap();
+    // the checksums this download is verified with, none if the checksum policy ignores them anyway
+    private final Map<String, String> algos;
+    // computed once, the tasks are compared many times when they are sorted and the file may change meanwhile
+    private final long priority;
+    // the conditions of the request for the resource, if we already have a copy of it that may still be current
+    private Map<String, String> conditions = Collections.emptyMap();
+    // the response to the first request of the download if it was started asynchronously, and what it was requested with
+    private Response prefetched;
+    private String prefetchedUri;
+    private Map<String, String> prefetchedConditions;
+    // the download this task registered as in flight before it was started asynchronously
+    private InFlightDownloads.Download enqueued;
 
     public GetTask(String path, File fileInLocalRepository, String checksumPolicy, CountDownLatch latch, T download, ExceptionWrapper<T> wrapper) {
       this.path = path;
@@ -431,16 +1025,86 @@ class AetherRepositoryConnector implements RepositoryConnector {
       this.latch = new LatchGuard(latch);
       this.download = download;
       this.wrapper = wrapper;
+      this.algos = RepositoryPolicy.CHECKSUM_POLICY_IGNORE.equals(checksumPolicy) ? Collections.<String, String> emptyMap() : checksumAlgos;
+      this.priority = computePriority();
     }
 
     public T getDownload() {
       return download;
     }
 
+    /**
+     * Metadata and existence checks come first, they are small and what is resolved next depends on them. The artifacts follow
+     * by their expected size, so that the largest ones start early and the small ones are done alongside them.
+     */
+    @Override
+    public long getPriority() {
+      return priority;
+    }
+
+    private long computePriority() {
+      if (fileInLocalRepository == null || download instanceof MetadataTransfer) {
+        return Long.MAX_VALUE;
+      }
+      if (fileInLocalRepository.isFile()) {
+        // most likely a SNAPSHOT we have an earlier build of
+        return fileInLocalRepository.length();
+      }
+      for (Map.Entry<String, Long> expectedSize : expectedSizes.entrySet()) {
+        if (path.endsWith(expectedSize.getKey())) {
+          return expectedSize.getValue();
+        }
+      }
+      return DEFAULT_EXPECTED_SIZE;
+    }
+
     public Exception getException() {
       return exception;
     }
 
+    /**
+     * Starts the download with an asynchronous request, the download continues on the thread of the client that completes the
+     * request. The client thus limits the number of downloads in flight, rather than the threads of the connector.
+     *
+     * @return Whether the download was started, downloads that do not start with a plain request have to be run the usual way
+     */
+    boolean enqueue() {
+      // waiting for other processes would hold the request
+      if (fileInLocalRepository == null || fileLocks || notFoundCache != null && download instanceof ArtifactTransfer && notFoundCache.isNotFound(path)) {
+        return false;
+      }
+      final String uri = buildUrl(path);
+      // claimed up front, a download of the same file that is already in flight is waited for the usual way instead
+      InFlightDownloads.Download shared = new InFlightDownloads.Download();
+      if (inFlightDownloads.register(getSharedKey(uri), shared) != null) {
+        return false;
+      }
+      enqueued = shared;
+      final Map<String, String> conditions = download instanceof MetadataTransfer && conditionalMetadata ? MetadataValidators.getConditions(fileInLocalRepository) : Collections.<String, String> emptyMap();
+      try {
+        aetherClient.getAsync(uri, conditions, new ResponseCallback() {
+          @Override
+          public void onResponse(Response response) {
+            prefetched = response;
+            prefetchedUri = uri;
+            prefetchedConditions = conditions;
+            run();
+          }
+
+          @Override
+          public void onFailure(IOException e) {
+            // the download makes the request again, and retries it as usual
+            run();
+          }
+        });
+        return true;
+      } catch (IOException e) {
+        inFlightDownloads.unregister(getSharedKey(uri), shared);
+        enqueued = null;
+        return false;
+      }
+    }
+
     public void run() {
       String uri = buildUrl(path);
       TransferResource transferResource = new TransferResource(repository.getUrl(), path, fileInLocalRepository, download.getTrace());
@@ -478,22 +1142,23 @@ class AetherRepositoryConnector implements RepositoryConnector {
           return;
         }
 
-        FileTransfer temporaryFileInLocalRepository = resumableGet(uri, fileInLocalRepository, transferResource, RequestType.GET, true);
-
-        //
-        // The file has now been successfully downloaded so let's perform any validations required
-        // like checksum validation and signature validation. We will only move the temporary file over
-        // to the realFile if all the validations are successful.
-        //
-        validateChecksums(temporaryFileInLocalRepository.file, fileInLocalRepository, uri, transferResource);
+        // only artifacts, any change of the metadata is to be noticed right away
+        boolean cacheNotFound = notFoundCache != null && download instanceof ArtifactTransfer;
+        if (cacheNotFound && notFoundCache.isNotFound(path)) {
+          throw new ResourceDoesNotExistException("Could not find " + uri + " in " + repository.getUrl() + ", it was not found recently");
+        }
 
-        //
-        // Only if the checksum handling succeeds will the temporary file be moved to the real file. The contents of the file are not
-        // available if there is a checksum handling failure.
-        //
-        rename(temporaryFileInLocalRepository.file, fileInLocalRepository);
+        long bytesTransferred;
+        try {
+          bytesTransferred = sharedGet(uri, transferResource);
+        } catch (ResourceDoesNotExistException e) {
+          if (cacheNotFound) {
+            notFoundCache.notFound(path);
+          }
+          throw e;
+        }
 
-        transferSucceeded(download, newEvent(transferResource, RequestType.GET, EventType.SUCCEEDED).setTransferredBytes(temporaryFileInLocalRepository.bytesTransferred).build());
+        transferSucceeded(download, newEvent(transferResource, RequestType.GET, EventType.SUCCEEDED).setTransferredBytes(bytesTransferred).build());
       } catch (Throwable t) {
         if (Exception.class.isAssignableFrom(t.getClass())) {
           exception = Exception.class.cast(t);
@@ -502,10 +1167,112 @@ class AetherRepositoryConnector implements RepositoryConnector {
         }
         transferFailed(download, newEvent(transferResource, exception, RequestType.GET, EventType.FAILED).build());
       } finally {
+        discard(checksumResponse);
+        if (enqueued != null) {
+          // failed before the download got to it, whoever waits for it tries again
+          enqueued.failed(new TransferCancelledException());
+          inFlightDownloads.unregister(getSharedKey(uri), enqueued);
+          enqueued = null;
+        }
+        if (prefetched != null) {
+          // the download was shared or served otherwise
+          prefetched.close();
+          prefetched = null;
+        }
         latch.countDown();
       }
     }
 
+    /**
+     * Downloads the file unless the same file is downloaded from the same location already, in which case we wait for that
+     * download and share its outcome. The checksum policy is part of the key since it decides about the outcome as well.
+     */
+    private long sharedGet(String uri, TransferResource transferResource) throws Exception {
+      String key = getSharedKey(uri);
+      while (true) {
+        InFlightDownloads.Download shared = enqueued != null ? enqueued : new InFlightDownloads.Download();
+        InFlightDownloads.Download inFlight = enqueued != null ? null : inFlightDownloads.register(key, shared);
+        enqueued = null;
+        if (inFlight == null) {
+          try {
+            long bytesTransferred = get(uri, transferResource);
+            shared.succeeded(bytesTransferred);
+            return bytesTransferred;
+          } catch (Throwable t) {
+            shared.failed(t);
+            throw t;
+          } finally {
+            inFlightDownloads.unregister(key, shared);
+          }
+        }
+        try {
+          return inFlight.await();
+        } catch (TransferCancelledException e) {
+          // the listener of the other download gave up, which is no reason for this one to
+        }
+      }
+    }
+
+    private String getSharedKey(String uri) {
+      return uri + " > " + fileInLocalRepository.getAbsolutePath() + " (" + checksumPolicy + ")";
+    }
+
+    private long get(String uri, TransferResource transferResource) throws Exception {
+      if (!fileLocks) {
+        return download(uri, transferResource);
+      }
+      long lastModified = fileInLocalRepository.lastModified();
+      long length = fileInLocalRepository.length();
+      try (DownloadLock lock = DownloadLock.lock(fileInLocalRepository, fileLockTimeout, fileLockStaleTime)) {
+        if (!lock.isLocked()) {
+          logger.warn("Gave up waiting for another process to download " + fileInLocalRepository);
+        }
+        if (lock.hasWaited() && fileInLocalRepository.isFile() && (fileInLocalRepository.lastModified() != lastModified || fileInLocalRepository.length() != length)) {
+          // another process downloaded the file while we were waiting for it
+          return fileInLocalRepository.length();
+        }
+        return download(uri, transferResource);
+      }
+    }
+
+    private long download(String uri, TransferResource transferResource) throws Exception {
+      boolean metadata = download instanceof MetadataTransfer && conditionalMetadata;
+      if (metadata) {
+        conditions = MetadataValidators.getConditions(fileInLocalRepository);
+      }
+      ChecksumCalculator checksums = new ChecksumCalculator(algos.keySet());
+      FileTransfer temporaryFileInLocalRepository = resumableGet(uri, fileInLocalRepository, transferResource, RequestType.GET, true, checksums);
+      if (temporaryFileInLocalRepository.file == null) {
+        // not modified, the copy we have was verified when it was downloaded
+        return 0;
+      }
+
+      //
+      // The file has now been successfully downloaded so let's perform any validations required
+      // like checksum validation and signature validation. We will only move the temporary file over
+      // to the realFile if all the validations are successful.
+      //
+      if (!algos.isEmpty()) {
+        validateChecksums(temporaryFileInLocalRepository.file, fileInLocalRepository, uri, transferResource, checksums.getChecksums(), checksumResponse);
+      }
+
+      //
+      // Only if the checksum handling succeeds will the temporary file be moved to the real file. The contents of the file are not
+      // available if there is a checksum handling failure.
+      //
+      rename(temporaryFileInLocalRepository.file, fileInLocalRepository);
+
+      if (metadata) {
+        try {
+          MetadataValidators.store(fileInLocalRepository, temporaryFileInLocalRepository.etag, temporaryFileInLocalRepository.lastModified);
+        } catch (IOException e) {
+          logger.debug("Failed to store the validators of " + fileInLocalRepository, e);
+        }
+      }
+
+      return temporaryFileInLocalRepository.bytesTransferred;
+    }
+
     class FileTransfer {
       FileTransfer(File file, long bytesTransferred) {
         this.file = file;
@@ -514,6 +1281,9 @@ class AetherRepositoryConnector implements RepositoryConnector {
 
       File file;
       long bytesTransferred;
+      // the validators of the content
+      String etag;
+      String lastModified;
     }
 
     private boolean resourceExist(String uri) throws IOException {
@@ -525,12 +1295,11 @@ class AetherRepositoryConnector implements RepositoryConnector {
     //
     // Checksum handling
     //
-    private void validateChecksums(File temporaryFileInLocalRepository, File fileInLocalRepository, String uri, TransferResource transferResource) throws Exception {
+    private void validateChecksums(File temporaryFileInLocalRepository, File fileInLocalRepository, String uri, TransferResource transferResource, Map<String, Object> checksums, Future<Response> checksumResponse) throws Exception {
       boolean failOnInvalidOrMissingCheckums = RepositoryPolicy.CHECKSUM_POLICY_FAIL.equals(checksumPolicy);
       try {
-        Map<String, Object> checksums = ChecksumUtils.calc(temporaryFileInLocalRepository, checksumAlgos.keySet());
-
-        if (!verifyChecksums(temporaryFileInLocalRepository, fileInLocalRepository, uri, checksums)) {
+        if (!verifyChecksumHeaders(temporaryFileInLocalRepository, fileInLocalRepository, checksums)
+            && !verifyChecksums(temporaryFileInLocalRepository, fileInLocalRepository, uri, checksums, checksumResponse)) {
           throw new ChecksumFailureException("Checksum validation failed" + ", no checksums available from the repository");
         }
       } catch (Exception e) {
@@ -548,13 +1317,20 @@ class AetherRepositoryConnector implements RepositoryConnector {
      * @param fileInLocalRepository The name of the completed name of the resource being downloaded e.g. ${localRepo}/io/tesla/maven/maven-core/3.1.2/maven-core-3.1.2.jar
      * @param uri The URI of the resource in the remote repository e.g. http://repo1.maven.org/maven2/io/tesla/maven/maven-core/3.1.2/maven-core-3.1.2.jar
      * @param checksums The calculated checksums of the file e.g. 724036fb069c47ccc1e27b370f99f6f10069e34a
+     * @param checksumResponse The response for the first checksum requested along with the artifact, may be {@code null}
      * @return Whether the checksum file remotely matches the locally calculated checksum
      * @throws ChecksumFailureException
      */
-    private boolean verifyChecksums(File temporaryFileInLocalRepository, File fileInLocalRepository, String uri,  Map<String, Object> checksums) throws ChecksumFailureException {
-      for (Map.Entry<String, String> algo : checksumAlgos.entrySet()) {
+    private boolean verifyChecksums(File temporaryFileInLocalRepository, File fileInLocalRepository, String uri,  Map<String, Object> checksums, Future<Response> checksumResponse) throws ChecksumFailureException {
+      for (Map.Entry<String, String> algo : algos.entrySet()) {
         String ext = algo.getValue();
-        String actual = (String) checksums.get(algo.getKey());
+        Object checksum = checksums.get(algo.getKey());
+        if (!(checksum instanceof String)) {
+          // an algorithm this JVM does not support
+          logger.debug("Cannot verify " + algo.getKey() + " checksum of " + uri + ": " + checksum);
+          continue;
+        }
+        String actual = (String) checksum;
   
         String checksumUri = uri + ext;
         // ${localRepo}/io/tesla/maven/maven-core/3.1.2/maven-core-3.1.2.jar + ".sha1"
@@ -563,7 +1339,15 @@ class AetherRepositoryConnector implements RepositoryConnector {
   
         try {
   
-          FileTransfer temporaryChecksumFile = resumableGet(checksumUri, checksumFileInLocalRepository, transferResource, RequestType.GET, false);
+          FileTransfer temporaryChecksumFile = null;
+          if (checksumResponse != null && ext.equals(prefetchedChecksum)) {
+            // only ever the first checksum we can verify is requested in advance
+            temporaryChecksumFile = getChecksum(checksumResponse, checksumUri, checksumFileInLocalRepository);
+            checksumResponse = null;
+          }
+          if (temporaryChecksumFile == null) {
+            temporaryChecksumFile = resumableGet(checksumUri, checksumFileInLocalRepository, transferResource, RequestType.GET, false, null);
+          }
           String expected = ChecksumUtils.read(temporaryChecksumFile.file);
           if (!expected.equalsIgnoreCase(actual)) {
             throw new ChecksumFailureException(expected, actual);
@@ -582,56 +1366,249 @@ class AetherRepositoryConnector implements RepositoryConnector {
       return false;
     }
 
-    private FileTransfer resumableGet(String uri, File fileInLocalRepository, TransferResource transferResource, RequestType requestType, boolean emitProgressEvent) throws Exception {
+    /**
+     * Verifies the calculated checksums against the ones the repository sent along with the content, if any. The expected
+     * checksum is written to the local repository the same way a downloaded checksum file is.
+     *
+     * @return Whether a checksum was sent by the repository and matches the locally calculated checksum
+     */
+    private boolean verifyChecksumHeaders(File temporaryFileInLocalRepository, File fileInLocalRepository, Map<String, Object> checksums) throws ChecksumFailureException {
+      for (Map.Entry<String, String> algo : algos.entrySet()) {
+        String expected = expectedChecksums.get(algo.getKey());
+        Object actual = checksums.get(algo.getKey());
+        if (expected == null || !(actual instanceof String)) {
+          continue;
+        }
+        if (!expected.equalsIgnoreCase((String) actual)) {
+          throw new ChecksumFailureException(expected, (String) actual);
+        }
+        File checksumFileInLocalRepository = new File(temporaryFileInLocalRepository.getParentFile(), fileInLocalRepository.getName() + algo.getValue());
+        try {
+          fileProcessor.write(checksumFileInLocalRepository, expected);
+        } catch (IOException e) {
+          throw new ChecksumFailureException(e);
+        }
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * @return The algorithms mapped to the checksums found in the response headers, only well formed ones are kept
+     */
+    private Map<String, String> getChecksumHeaders(Response response) {
+      Map<String, String> checksums = new HashMap<>();
+      for (Map.Entry<String, String> header : checksumHeaders.entrySet()) {
+        String checksum = response.getHeader(header.getKey());
+        if (checksum != null && !checksums.containsKey(header.getValue())) {
+          checksum = checksum.trim();
+          if (checksum.matches("[0-9a-fA-F]+")) {
+            checksums.put(header.getValue(), checksum);
+          }
+        }
+      }
+      return checksums;
+    }
+
+    private Future<Response> getChecksumAsync(String uri) {
+      try {
+        return aetherClient.getAsync(uri + prefetchedChecksum);
+      } catch (IOException e) {
+        return null; // the checksum will be requested once the artifact is downloaded
+      }
+    }
+
+    /**
+     * @return The checksum file downloaded from the given response, or {@code null} if the request failed and should be retried
+     */
+    private FileTransfer getChecksum(Future<Response> checksumResponse, String uri, File fileInLocalRepository) throws Exception {
+      Response response;
+      try {
+        response = checksumResponse.get();
+      } catch (ExecutionException e) {
+        return null;
+      }
+      try (InputStream is = response.getInputStream()) {
+        handleResponseCode(uri, response.getStatusCode(), response.getStatusMessage());
+        File temporaryFileInLocalRepository = getTmpFile(fileInLocalRepository.getPath());
+        long bytesTransferred = Files.copy(is, temporaryFileInLocalRepository.toPath());
+        return new FileTransfer(temporaryFileInLocalRepository, bytesTransferred);
+      } finally {
+        response.close();
+      }
+    }
+
+    private void discard(Future<Response> response) {
+      if (response != null && !response.cancel(false)) {
+        try {
+          response.get().close();
+        } catch (Exception e) {
+          // nothing to clean up
+        }
+      }
+    }
+
+    /**
+     * @param checksums The calculator to feed with the downloaded content while it is streamed to disk, may be {@code null}
+     */
+    private FileTransfer resumableGet(String uri, File fileInLocalRepository, TransferResource transferResource, RequestType requestType, boolean emitProgressEvent, ChecksumCalculator checksums) throws Exception {
 
       long bytesTransferred = 0;
 
       boolean downloadSuccessful = false;
-      File temporaryFileInLocalRepository = null;
 
       //
-      // Need to distinguish between client side failure and server side failure
-      //      
+      // The same temporary file is kept for all the attempts so that a download interrupted by a dropped connection can be resumed
+      // from the bytes we already have, instead of transferring the whole resource again.
+      //
+      File temporaryFileInLocalRepository = getTmpFile(fileInLocalRepository.getPath());
+      String validator = null;
+
+      // failures of this download only, they are not failures of the task unless they are eventually thrown
+      Exception exception = null;
+
+      // only the artifacts themselves are worth splitting, never their checksums
+      boolean segmented = checksums != null && segments > 1;
+      String etag = null;
+      String lastModified = null;
+
+      //
+      // A download that failed after it got some of the content is resumed right away, it has shown that the server can serve
+      // it. Any other failure is left to the retry policy.
+      //
+      int failures = 0;
       for (int retries = 0; retries < 10; retries++) {
-        temporaryFileInLocalRepository = getTmpFile(fileInLocalRepository.getPath());
+        long resumeOffset = temporaryFileInLocalRepository.length();
+        if (checksums != null && checksums.getLength() != resumeOffset) {
+          // the checksums must cover exactly what is on disk for the download to be resumed
+          temporaryFileInLocalRepository.delete();
+          resumeOffset = 0;
+        }
 
         //JVZ: this all needs to be moved up to the client
 
-        try (Response response = getResponse(uri,temporaryFileInLocalRepository);
-            InputStream is = response.getInputStream()) {
+        try (Response response = getResponse(uri, resumeOffset, validator, checksums != null ? conditions : Collections.<String, String> emptyMap());
+            ReadableByteChannel source = response.getChannel()) {
 
-        handleResponseCode(uri, response.getStatusCode(), response.getStatusMessage());
+          if (resumeOffset == 0 && response.getStatusCode() == HTTP_NOT_MODIFIED && checksums != null && !conditions.isEmpty()) {
+            temporaryFileInLocalRepository.delete();
+            return new FileTransfer(null, 0);
+          }
 
-        if (emitProgressEvent) {
-          String contentLength = response.getHeader("Content-Length");
-          if (contentLength != null) {
-            long length = Long.parseLong(contentLength);
-            transferResource.setContentLength(length);
-            transferStarted(download, newEvent(transferResource, null, requestType, EventType.STARTED).setTransferredBytes(bytesTransferred).build());
+          if (resumeOffset > 0 && response.getStatusCode() == HTTP_RANGE_NOT_SATISFIABLE) {
+            // our partial content does not match what the server has, start over from scratch
+            temporaryFileInLocalRepository.delete();
+            continue;
           }
-        }
 
-        final byte[] buffer = new byte[1024 * 1024];
-        int n = 0;
+          handleResponseCode(uri, response.getStatusCode(), response.getStatusMessage());
+
+          //
+          // The server may ignore the range request, or the resource may have changed since the previous attempt, in which case
+          // we get the whole resource again and have to discard what we have so far
+          //
+          boolean resumed = resumeOffset > 0 && response.getStatusCode() == HttpURLConnection.HTTP_PARTIAL;
+          if (resumed && resumeOffset != getRangeStart(response)) {
+            // a range we did not ask for, we cannot safely append it to what we have
+            temporaryFileInLocalRepository.delete();
+            continue;
+          }
+          if (!resumed) {
+            resumeOffset = 0;
+            if (checksums != null) {
+              checksums.reset();
+            }
+          }
+          bytesTransferred = resumeOffset;
+          validator = getValidator(response);
+          etag = response.getHeader("ETag");
+          lastModified = response.getHeader("Last-Modified");
+
+          //
+          // Once we know the artifact is there, the preferred checksum is requested in parallel with its content so it is
+          // already available, or at least on its way, when the download completes. There is no need for it when the repository
+          // sent the checksums along.
+          //
+          if (checksums != null && !algos.isEmpty()) {
+            Map<String, String> headers = getChecksumHeaders(response);
+            if (!headers.isEmpty() || !resumed) {
+              expectedChecksums = headers;
+            }
+            // an asynchronous download would wait for the checksum while holding one of the requests it is queued behind
+            if (expectedChecksums.isEmpty() && checksumResponse == null && !async) {
+              checksumResponse = getChecksumAsync(uri);
+            }
+          }
+
+          if (emitProgressEvent) {
+            String contentLength = response.getHeader("Content-Length");
+            if (contentLength != null) {
+              long length = Long.parseLong(contentLength);
+              transferResource.setContentLength(resumeOffset + length);
+              transferResource.setResumeOffset(resumeOffset);
+              transferStarted(download, newEvent(transferResource, null, requestType, EventType.STARTED).setTransferredBytes(bytesTransferred).build());
+            }
+          }
 
-          try (OutputStream os = new BufferedOutputStream(new FileOutputStream(temporaryFileInLocalRepository))) {
-            while (-1 != (n = is.read(buffer))) {
-              os.write(buffer, 0, n);
-              if (emitProgressEvent) {
-                transferProgressed(download, newEvent(transferResource, null, requestType, EventType.PROGRESSED).setTransferredBytes(n).setDataBuffer(buffer, 0, n).build());
+          long contentLength = getContentLength(response);
+          if (segmented && !resumed && contentLength >= segmentThreshold && "bytes".equalsIgnoreCase(response.getHeader("Accept-Ranges"))) {
+            try {
+              segmentedGet(uri, source, temporaryFileInLocalRepository, contentLength, validator, transferResource, requestType, emitProgressEvent, checksums);
+            } catch (IOException e) {
+              // fall back to a single stream for the remaining attempts
+              segmented = false;
+              temporaryFileInLocalRepository.delete();
+              checksums.reset();
+              throw e;
+            }
+            bytesTransferred = contentLength;
+            downloadSuccessful = true;
+            break;
+          }
+
+          //
+          // The body is drained straight into the file channel through a pooled direct buffer, which the file channel writes
+          // without copying it, and the checksums and the listener read the same buffer
+          //
+          final ByteBuffer buffer = directBufferPool.acquire();
+          TransferProgress progress = new TransferProgress(download, transferResource, requestType, emitProgressEvent, resumeOffset);
+          int n = 0;
+
+          try (FileChannel channel = FileChannel.open(temporaryFileInLocalRepository.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, resumed ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (-1 != (n = read(source, buffer, buffer.capacity()))) {
+              while (buffer.hasRemaining()) {
+                channel.write(buffer);
+              }
+              buffer.rewind();
+              if (checksums != null) {
+                checksums.update(buffer);
               }
+              progress.progressed(buffer);
               bytesTransferred = bytesTransferred + n;
             }
+            progress.flush();
             //
             // No interruptions in the download so we have transferred all the bytes
             //
             downloadSuccessful = true;
           } catch (IOException e) {
+            // what made it to disk is kept for resuming, so it is reported as transferred
+            progress.flush();
             throw e;
+          } finally {
+            progress.close();
+            directBufferPool.release(buffer);
           }
 
         } catch (IOException e) {
           exception = e;
+          if (temporaryFileInLocalRepository.length() <= resumeOffset) {
+            long delay = retryPolicy.getDelay(e, ++failures);
+            if (delay < 0) {
+              break;
+            }
+            RetryPolicy.sleep(delay);
+          }
         } finally {
           if (downloadSuccessful) {
             exception = null;
@@ -643,16 +1620,155 @@ class AetherRepositoryConnector implements RepositoryConnector {
       //
       // After all our retry attempts if we are still in an exception state then throw the exception
       //
-      if (exception != null) {
+      if (!downloadSuccessful) {
+        temporaryFileInLocalRepository.delete();
+        if (exception == null) {
+          exception = new TransferException(String.format("Failed to transfer %s, unable to resume the download", uri));
+        }
         throw exception;
       }
 
-      return new FileTransfer(temporaryFileInLocalRepository, bytesTransferred);
+      FileTransfer transfer = new FileTransfer(temporaryFileInLocalRepository, bytesTransferred);
+      transfer.etag = etag;
+      transfer.lastModified = lastModified;
+      return transfer;
     }
 
-    private Response getResponse(String uri, File temporaryFileInLocalRepository)
+    /**
+     * Downloads the content in {@link #segments} byte ranges that are transferred in parallel, each over its own connection, and
+     * written to their position in the preallocated temporary file. The first range is read from the response we already have.
+     */
+    private void segmentedGet(String uri, ReadableByteChannel source, File temporaryFileInLocalRepository, long length, String validator, TransferResource transferResource, RequestType requestType, boolean emitProgressEvent, ChecksumCalculator checksums) throws Exception {
+      final long segmentLength = (length + segments - 1) / segments;
+      try (RandomAccessFile file = new RandomAccessFile(temporaryFileInLocalRepository, "rw")) {
+        file.setLength(length);
+        FileChannel channel = file.getChannel();
+
+        List<Future<Long>> futures = new ArrayList<>();
+        ExecutorService executor = getSegmentExecutor();
+        try {
+          for (long start = segmentLength; start < length; start += segmentLength) {
+            long end = Math.min(start + segmentLength, length) - 1;
+            futures.add(executor.submit(new SegmentTask(uri, validator, start, end, channel)));
+          }
+
+          final ByteBuffer buffer = directBufferPool.acquire();
+          TransferProgress progress = new TransferProgress(download, transferResource, requestType, emitProgressEvent, 0);
+          try {
+            long position = 0;
+            int n = 0;
+            while (position < segmentLength && -1 != (n = read(source, buffer, segmentLength - position))) {
+              write(channel, buffer, position);
+              buffer.rewind();
+              if (checksums != null) {
+                checksums.update(buffer);
+              }
+              progress.progressed(buffer);
+              position += n;
+            }
+            if (position < Math.min(segmentLength, length)) {
+              throw new EOFException(String.format("Premature end of %s after %s bytes", uri, position));
+            }
+
+            for (Future<Long> future : futures) {
+              try {
+                future.get();
+              } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+              }
+            }
+
+            //
+            // The other segments did not stream through the checksums and the listener, catch up in order from what is on disk now
+            //
+            if (checksums != null || emitProgressEvent) {
+              for (position = segmentLength; position < length; position += n) {
+                buffer.clear();
+                n = channel.read(buffer, position);
+                if (n < 0) {
+                  throw new EOFException(String.format("Premature end of %s after %s bytes", temporaryFileInLocalRepository, position));
+                }
+                buffer.flip();
+                if (checksums != null) {
+                  checksums.update(buffer);
+                }
+                progress.progressed(buffer);
+              }
+            }
+            progress.flush();
+          } finally {
+            progress.close();
+            directBufferPool.release(buffer);
+          }
+        } finally {
+          for (Future<Long> future : futures) {
+            future.cancel(true);
+          }
+        }
+      }
+    }
+
+    private class SegmentTask implements Callable<Long> {
+
+      private final String uri;
+      private final String validator;
+      private final long start;
+      private final long end;
+      private final FileChannel channel;
+
+      SegmentTask(String uri, String validator, long start, long end, FileChannel channel) {
+        this.uri = uri;
+        this.validator = validator;
+        this.start = start;
+        this.end = end;
+        this.channel = channel;
+      }
+
+      @Override
+      public Long call() throws Exception {
+        Map<String, String> requestHeaders = new HashMap<>();
+        requestHeaders.put("Range", "bytes=" + start + "-" + end);
+        if (validator != null) {
+          requestHeaders.put("If-Range", validator);
+        }
+        try (Response response = observedGet(uri, requestHeaders);
+            ReadableByteChannel source = response.getChannel()) {
+          if (response.getStatusCode() != HttpURLConnection.HTTP_PARTIAL || getRangeStart(response) != start) {
+            throw new IOException(String.format("Range %s-%s of %s not available. Status code %s, %s", start, end, uri, response.getStatusCode(), response.getStatusMessage()));
+          }
+          // nothing but the file needs the range, the file channel copies it over in one go
+          long position = start;
+          long n = 0;
+          while (position <= end && (n = channel.transferFrom(source, position, end + 1 - position)) > 0) {
+            position += n;
+          }
+          if (position <= end) {
+            throw new EOFException(String.format("Premature end of range %s-%s of %s after %s bytes", start, end, uri, position - start));
+          }
+          return position - start;
+        }
+      }
+    }
+
+    private Response getResponse(String uri, long resumeOffset, String validator, Map<String, String> conditions)
             throws IOException {
-      return aetherClient.get(uri);
+      if (prefetched != null) {
+        Response response = prefetched;
+        prefetched = null;
+        if (resumeOffset <= 0 && uri.equals(prefetchedUri) && conditions.equals(prefetchedConditions)) {
+          return response;
+        }
+        response.close();
+      }
+      if (resumeOffset <= 0) {
+        return observedGet(uri, conditions);
+      }
+      Map<String, String> requestHeaders = new HashMap<>();
+      requestHeaders.put("Range", "bytes=" + resumeOffset + "-");
+      if (validator != null) {
+        requestHeaders.put("If-Range", validator);
+      }
+      return observedGet(uri, requestHeaders);
     }
 
     public void flush() {
@@ -698,7 +1814,7 @@ class AetherRepositoryConnector implements RepositoryConnector {
         transferStarted(upload, newEvent(transferResource, null, RequestType.PUT, EventType.STARTED).build());
 
         FileSource source = new FileSource(upload, transferResource);
-        try (Response response = aetherClient.put(uri, source)) {
+        try (Response response = put(uri, source)) {
 
           handleResponseCode(uri, response.getStatusCode(), response.getStatusMessage());
 
@@ -709,10 +1825,14 @@ class AetherRepositoryConnector implements RepositoryConnector {
 
           transferSucceeded(upload, newEvent(transferResource, null, RequestType.PUT, EventType.SUCCEEDED).setTransferredBytes(source.getBytesTransferred()).build());
 
+          if (notFoundCache != null) {
+            notFoundCache.invalidate(path);
+          }
+
           //
           // Send up the checksums
           //
-          uploadChecksums(file, uri);
+          uploadChecksums(file, uri, source.getChecksums());
           } catch (Exception e) {
             throw e;
           }
@@ -728,13 +1848,32 @@ class AetherRepositoryConnector implements RepositoryConnector {
       }
     }
 
+    /**
+     * Uploads the file, sending it again on I/O errors for as long as the retry policy allows.
+     */
+    private Response put(String uri, FileSource source) throws IOException {
+      for (int retry = 1;; retry++) {
+        try {
+          return aetherClient.put(uri, source);
+        } catch (IOException e) {
+          long delay = retryPolicy.getDelay(e, retry);
+          if (delay < 0 || source.getException() != null) {
+            throw e;
+          }
+          RetryPolicy.sleep(delay);
+        }
+      }
+    }
+
     public void flush() {
       wrapper.wrap(upload, exception, repository);
     }
 
-    private void uploadChecksums(File file, String uri) {
+    private void uploadChecksums(File file, String uri, Map<String, Object> checksums) {
       try {
-        Map<String, Object> checksums = ChecksumUtils.calc(file, checksumAlgos.keySet());
+        if (checksums == null) {
+          checksums = ChecksumUtils.calc(file, checksumAlgos.keySet());
+        }
         for (Map.Entry<String, Object> entry : checksums.entrySet()) {
           uploadChecksum(file, uri, entry.getKey(), entry.getValue());
         }
@@ -786,7 +1925,10 @@ class AetherRepositoryConnector implements RepositoryConnector {
    * @return the complete URL
    */
   private String buildUrl(String path) {
-    final String repoUrl = repository.getUrl();
+    return buildUrl(repository.getUrl(), path);
+  }
+
+  private static String buildUrl(String repoUrl, String path) {
     path = path.replace(' ', '+');
 
     if (repoUrl.charAt(repoUrl.length() - 1) != '/') {
@@ -795,15 +1937,122 @@ class AetherRepositoryConnector implements RepositoryConnector {
     return repoUrl + path;
   }
 
+  /**
+   * Returns the first byte position of a partial response, as given by its {@code Content-Range} header, or {@code -1} if the
+   * response does not carry a usable content range.
+   */
+  private static long getRangeStart(Response response) {
+    // Content-Range: bytes 21010-47021/47022
+    String contentRange = response.getHeader("Content-Range");
+    if (contentRange == null || !contentRange.startsWith("bytes ")) {
+      return -1;
+    }
+    int dash = contentRange.indexOf('-');
+    if (dash < 0) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(contentRange.substring("bytes ".length(), dash).trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Returns the validator to send in {@code If-Range} when resuming the download of the given response, or {@code null} if the
+   * server did not provide one. Weak entity tags cannot be used for range requests, so we fall back to {@code Last-Modified}.
+   */
+  private static String getValidator(Response response) {
+    String etag = response.getHeader("ETag");
+    if (etag != null && !etag.startsWith("W/")) {
+      return etag;
+    }
+    return response.getHeader("Last-Modified");
+  }
+
+  /**
+   * Reads at most {@code limit} bytes from the channel into the cleared buffer. A single read is made so that whatever was
+   * received is written out before a broken connection can fail the next read, which keeps it available for resuming.
+   *
+   * @return The number of bytes read and ready to be drained from the buffer, or -1 if the end of the channel was reached
+   */
+  private static int read(ReadableByteChannel channel, ByteBuffer buffer, long limit) throws IOException {
+    buffer.clear();
+    if (limit < buffer.capacity()) {
+      buffer.limit((int) limit);
+    }
+    int n = channel.read(buffer);
+    buffer.flip();
+    return n;
+  }
+
+  private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  private static long getContentLength(Response response) {
+    String contentLength = response.getHeader("Content-Length");
+    try {
+      return contentLength != null ? Long.parseLong(contentLength) : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Opens connections to the repository in the background, if enabled, so that the first transfers do not wait for the name of
+   * the host to resolve and the TCP and TLS handshakes. The connections are opened by HEAD requests for the repository URL,
+   * whatever the answer, and left in the pool of the client. Nothing waits for them, a failure only leaves the work to the
+   * first transfers.
+   */
+  void warmUp() {
+    for (int i = 0; i < warmUpConnections; i++) {
+      try {
+        aetherClient.headAsync(repository.getUrl(), new ResponseCallback() {
+          @Override
+          public void onResponse(Response response) {
+            response.close();
+          }
+
+          @Override
+          public void onFailure(IOException e) {
+            logger.debug("Failed to warm up a connection to " + repository.getUrl(), e);
+          }
+        });
+      } catch (IOException | RuntimeException e) {
+        logger.debug("Failed to warm up a connection to " + repository.getUrl(), e);
+        return;
+      }
+    }
+  }
+
   static interface ExceptionWrapper<T> {
     void wrap(T transfer, Exception e, RemoteRepository repository);
   }
 
   public void close() {
-    // this client implementation is thread-safe
-    if (executor instanceof ExecutorService) {
-      ((ExecutorService) executor).shutdown();
-      executor = null;
+    // this client implementation is thread-safe, and the threads of the scheduler are shared with the other connectors
+    executor = null;
+    synchronized (this) {
+      if (segmentExecutor != null) {
+        segmentExecutor.shutdown();
+        segmentExecutor = null;
+      }
+    }
+    if (notFoundCache != null) {
+      try {
+        notFoundCache.save();
+      } catch (IOException e) {
+        logger.debug("Failed to save the resources not found in " + repository.getUrl(), e);
+      }
+    }
+    // the connections are left open for the next batch, Aether reuses the connector after closing it
+    try {
+      aetherClient.close();
+    } catch (IOException e) {
+      logger.debug("Failed to close the client of " + repository.getUrl(), e);
     }
   }
 
@@ -86,8 +86,14 @@ public final class AetherRepositoryConnectorFactory implements RepositoryConnect
     ConnectorKey key = new ConnectorKey(remoteRepository);
     RepositoryConnector connector = (RepositoryConnector) repositorySystemSession.getData().get(key);
     if (connector == null) {
-      connector = new AetherRepositoryConnector(remoteRepository, repositorySystemSession, fileProcessor, sslSocketFactory);
-      if (!repositorySystemSession.getData().set(key, null, connector)) {
+      AetherRepositoryConnector created = new AetherRepositoryConnector(remoteRepository, repositorySystemSession, fileProcessor, sslSocketFactory);
+      if (repositorySystemSession.getData().set(key, null, created)) {
+        // the first transfers then find connections to the repository open already, if enabled
+        created.warmUp();
+        connector = created;
+      } else {
+        // another thread was first, this one was never used
+        created.close();
         connector = (RepositoryConnector) repositorySystemSession.getData().get(key);
       }
     }
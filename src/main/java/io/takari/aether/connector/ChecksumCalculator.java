@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.aether.util.ChecksumUtils;
+
+/**
+ * Calculates checksums incrementally while the content is streamed, so that a downloaded file does not have to be read back
+ * from disk to be validated. The result has the same shape as {@link ChecksumUtils#calc(java.io.File, Collection)}: the
+ * algorithm name mapped to either the hex encoded checksum or the exception that prevented its calculation.
+ */
+class ChecksumCalculator {
+
+  private final Map<String, Object> digests = new LinkedHashMap<>();
+
+  private long length;
+
+  public ChecksumCalculator(Collection<String> algos) {
+    for (String algo : algos) {
+      try {
+        digests.put(algo, MessageDigest.getInstance(algo));
+      } catch (NoSuchAlgorithmException e) {
+        digests.put(algo, e);
+      }
+    }
+  }
+
+  public void update(byte[] buffer, int offset, int len) {
+    for (Object digest : digests.values()) {
+      if (digest instanceof MessageDigest) {
+        ((MessageDigest) digest).update(buffer, offset, len);
+      }
+    }
+    length += len;
+  }
+
+  /**
+   * Updates the checksums with the remaining content of the buffer, the position of the buffer is left unchanged.
+   */
+  public void update(ByteBuffer buffer) {
+    int position = buffer.position();
+    for (Object digest : digests.values()) {
+      if (digest instanceof MessageDigest) {
+        buffer.position(position);
+        ((MessageDigest) digest).update(buffer);
+      }
+    }
+    buffer.position(position);
+    length += buffer.remaining();
+  }
+
+  public void reset() {
+    for (Object digest : digests.values()) {
+      if (digest instanceof MessageDigest) {
+        ((MessageDigest) digest).reset();
+      }
+    }
+    length = 0;
+  }
+
+  /**
+   * @return The number of bytes that went into the checksums so far.
+   */
+  public long getLength() {
+    return length;
+  }
+
+  /**
+   * Completes the calculation, the calculator starts over afterwards.
+   */
+  public Map<String, Object> getChecksums() {
+    Map<String, Object> checksums = new LinkedHashMap<>();
+    for (Map.Entry<String, Object> entry : digests.entrySet()) {
+      Object digest = entry.getValue();
+      if (digest instanceof MessageDigest) {
+        digest = ChecksumUtils.toHexString(((MessageDigest) digest).digest());
+      }
+      checksums.put(entry.getKey(), digest);
+    }
+    length = 0;
+    return checksums;
+  }
+}
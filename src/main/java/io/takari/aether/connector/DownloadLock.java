@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An advisory lock on a file of the local repository, shared by all the processes that use the same local repository. A process
+ * holds the lock of a file while downloading it, so the other processes wait for it and reuse the downloaded file instead of
+ * downloading it again. The lock file {@code <name>.lock} sits next to the file and is left behind, deleting it would allow two
+ * processes to lock different files of the same name.
+ * <p>
+ * The operating system releases the lock when the process holding it dies, but a process can also hang. The lock is considered
+ * stale when neither the lock file nor an in-progress download of the file was modified for a while, the waiting process then
+ * goes ahead without the lock. Downloads are renamed into place atomically so the worst case is a duplicate download.
+ */
+class DownloadLock implements Closeable {
+
+  private static final long POLL_INTERVAL = 100;
+
+  private static final byte[] OWNER = (ManagementFactory.getRuntimeMXBean().getName() + "\n").getBytes(StandardCharsets.UTF_8);
+
+  private final FileChannel channel;
+
+  private final FileLock lock;
+
+  private final boolean waited;
+
+  private DownloadLock(FileChannel channel, FileLock lock, boolean waited) {
+    this.channel = channel;
+    this.lock = lock;
+    this.waited = waited;
+  }
+
+  /**
+   * Locks the given file, waiting for other processes to release it.
+   *
+   * @param timeout The maximum time in milliseconds to wait for the lock
+   * @param staleTime The time in milliseconds without any activity of the process holding the lock after which it is ignored
+   * @return The lock, which is not actually held if the wait timed out or the lock was stale
+   */
+  public static DownloadLock lock(final File file, long timeout, long staleTime) throws IOException, InterruptedException {
+    File lockFile = new File(file.getParentFile(), file.getName() + ".lock");
+    FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    try {
+      long start = System.currentTimeMillis();
+      boolean waited = false;
+      while (true) {
+        FileLock lock = tryLock(channel);
+        if (lock != null) {
+          // who holds the lock, also marks the lock as alive
+          channel.truncate(0);
+          channel.write(ByteBuffer.wrap(OWNER), 0);
+          return new DownloadLock(channel, lock, waited);
+        }
+        long now = System.currentTimeMillis();
+        if (now - start >= timeout || now - getLastActivity(file, lockFile) >= staleTime) {
+          channel.close();
+          return new DownloadLock(null, null, true);
+        }
+        waited = true;
+        Thread.sleep(POLL_INTERVAL);
+      }
+    } catch (IOException | InterruptedException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private static FileLock tryLock(FileChannel channel) throws IOException {
+    try {
+      return channel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      return null; // held by another download of this JVM
+    }
+  }
+
+  /**
+   * @return When the lock file or any in-progress download of the file was last modified
+   */
+  private static long getLastActivity(File file, File lockFile) {
+    final String suffix = "-" + file.getName() + "-in-progress";
+    File[] downloads = file.getParentFile().listFiles(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.startsWith("aether-") && name.endsWith(suffix);
+      }
+    });
+    long lastActivity = lockFile.lastModified();
+    if (downloads != null) {
+      for (File download : downloads) {
+        lastActivity = Math.max(lastActivity, download.lastModified());
+      }
+    }
+    return lastActivity;
+  }
+
+  /**
+   * @return Whether the lock is held, it is not if waiting for it timed out or it was stale
+   */
+  public boolean isLocked() {
+    return lock != null;
+  }
+
+  /**
+   * @return Whether another process held the lock, and possibly downloaded the file, while we were waiting
+   */
+  public boolean hasWaited() {
+    return waited;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (channel != null) {
+      try {
+        lock.release();
+      } finally {
+        channel.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.takari.aether.client.AetherClient;
+import io.takari.aether.client.Response;
+import io.takari.aether.client.ResponseCallback;
+
+/**
+ * A GET that is sent once more when the answer is late, to the same server over another connection or to a mirror of it. Now
+ * and then a request stalls on a slow server or connection while the same request sent again is answered right away. The
+ * first answer wins and the other request is cancelled. A server error does not win as long as the other request may still
+ * do better.
+ */
+class HedgedGet {
+
+  private final AetherClient client;
+
+  private final Map<String, String> requestHeaders;
+
+  private final List<Attempt> attempts = new ArrayList<>();
+
+  private int pending;
+
+  private boolean done;
+
+  private Attempt winner;
+
+  private IOException failure;
+
+  HedgedGet(AetherClient client, Map<String, String> requestHeaders) {
+    this.client = client;
+    this.requestHeaders = requestHeaders;
+  }
+
+  /**
+   * @param uri The resource to get
+   * @param hedgeUri The resource to get if the answer for the first one is late, the same or one of a mirror
+   * @param delay The nanoseconds to wait for the answer before the request is sent again
+   */
+  Response get(String uri, String hedgeUri, long delay) throws IOException {
+    send(uri);
+    try {
+      synchronized (this) {
+        long deadline = System.nanoTime() + delay;
+        long wait;
+        while (!done && (wait = deadline - System.nanoTime()) > 0) {
+          TimeUnit.NANOSECONDS.timedWait(this, wait);
+        }
+        if (!done) {
+          send(hedgeUri);
+        }
+        while (!done) {
+          wait();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for " + uri);
+    } finally {
+      cancelLosers();
+    }
+    if (winner == null) {
+      throw failure;
+    }
+    return winner.response;
+  }
+
+  private synchronized void send(String uri) {
+    Attempt attempt = new Attempt();
+    pending++;
+    try {
+      attempt.call = client.getAsync(uri, requestHeaders, attempt);
+    } catch (IOException e) {
+      attempt.onFailure(e);
+      return;
+    }
+    attempts.add(attempt);
+  }
+
+  private void cancelLosers() {
+    List<Attempt> losers;
+    synchronized (this) {
+      done = true;
+      losers = new ArrayList<>(attempts);
+      losers.remove(winner);
+    }
+    for (Attempt loser : losers) {
+      close(loser.call);
+    }
+  }
+
+  private static void close(Closeable closeable) {
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      // the request is of no interest anymore
+    }
+  }
+
+  private class Attempt implements ResponseCallback {
+
+    Closeable call;
+
+    Response response;
+
+    @Override
+    public void onResponse(Response response) {
+      synchronized (HedgedGet.this) {
+        pending--;
+        if (!done && (pending == 0 || !isServerError(response))) {
+          this.response = response;
+          winner = this;
+          done = true;
+          HedgedGet.this.notifyAll();
+          return;
+        }
+      }
+      close(response);
+    }
+
+    @Override
+    public void onFailure(IOException e) {
+      synchronized (HedgedGet.this) {
+        pending--;
+        if (failure == null) {
+          failure = e;
+        }
+        if (pending == 0 && !done) {
+          done = true;
+          HedgedGet.this.notifyAll();
+        }
+      }
+    }
+  }
+
+  private static boolean isServerError(Response response) {
+    try {
+      return response.getStatusCode() >= 500;
+    } catch (IOException e) {
+      return true;
+    }
+  }
+}
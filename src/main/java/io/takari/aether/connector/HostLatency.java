@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The time a host took to answer the latest requests, shared by all connectors of this JVM.
+ */
+class HostLatency {
+
+  private static final int SAMPLES = 100;
+
+  private static final int MIN_SAMPLES = 20;
+
+  private static final ConcurrentMap<String, HostLatency> hosts = new ConcurrentHashMap<>();
+
+  private final long[] samples = new long[SAMPLES];
+
+  private int count;
+
+  private int next;
+
+  static HostLatency get(String host) {
+    HostLatency latency = hosts.get(host);
+    if (latency == null) {
+      HostLatency created = new HostLatency();
+      latency = hosts.putIfAbsent(host, created);
+      if (latency == null) {
+        latency = created;
+      }
+    }
+    return latency;
+  }
+
+  /**
+   * @param latency The nanoseconds it took the host to answer a request
+   */
+  synchronized void add(long latency) {
+    samples[next] = latency;
+    next = (next + 1) % SAMPLES;
+    count = Math.min(count + 1, SAMPLES);
+  }
+
+  /**
+   * @param percentile The percentile, like 95
+   * @return The latency in nanoseconds that the given percent of the latest requests did not exceed, or -1 if there were too
+   *         few requests yet to tell
+   */
+  synchronized long getPercentile(int percentile) {
+    if (count < MIN_SAMPLES) {
+      return -1;
+    }
+    long[] sorted = Arrays.copyOf(samples, count);
+    Arrays.sort(sorted);
+    return sorted[Math.min(count - 1, (int) Math.ceil(count * percentile / 100.0) - 1)];
+  }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * The downloads in progress in this JVM. Parallel builds often resolve the same artifact from several threads at once, possibly
+ * through different connectors, and the first download of a resource is shared with everyone who asks for the same resource
+ * while it is in progress instead of fetching it again.
+ */
+class InFlightDownloads {
+
+  static final InFlightDownloads INSTANCE = new InFlightDownloads();
+
+  static class Download {
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private volatile long bytesTransferred;
+
+    private volatile Throwable failure;
+
+    void succeeded(long bytesTransferred) {
+      this.bytesTransferred = bytesTransferred;
+      done.countDown();
+    }
+
+    void failed(Throwable failure) {
+      this.failure = failure;
+      done.countDown();
+    }
+
+    /**
+     * Waits for the download to complete.
+     *
+     * @return The number of bytes transferred
+     * @throws Exception The failure of the download
+     */
+    long await() throws Exception {
+      done.await();
+      if (failure instanceof Exception) {
+        throw (Exception) failure;
+      } else if (failure != null) {
+        throw new Exception(failure);
+      }
+      return bytesTransferred;
+    }
+  }
+
+  private final ConcurrentMap<String, Download> downloads = new ConcurrentHashMap<>();
+
+  /**
+   * Registers the download of a resource, unless the resource is downloaded already.
+   *
+   * @return The download in progress for the same key, or {@code null} if the given download was registered and the caller has
+   *         to perform it, complete it and unregister it
+   */
+  Download register(String key, Download download) {
+    return downloads.putIfAbsent(key, download);
+  }
+
+  void unregister(String key, Download download) {
+    downloads.remove(key, download);
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The validators of the metadata files in the local repository, kept in a small {@code <name>.validators} properties file next
+ * to each of them. They turn later requests for the metadata into conditional ones, which the server answers with a 304 and
+ * no content if the metadata did not change since we downloaded it. The validators only apply as long as the file is the one
+ * they were recorded for, a file modified or replaced by anyone else is downloaded in full again.
+ */
+class MetadataValidators {
+
+  private static final String ETAG = "etag";
+
+  private static final String LAST_MODIFIED = "lastModified";
+
+  private static final String LENGTH = "length";
+
+  private static final String TIMESTAMP = "timestamp";
+
+  private MetadataValidators() {}
+
+  /**
+   * @return The {@code If-None-Match} and {@code If-Modified-Since} request headers for the given file, empty if we have no
+   *         usable validators for it
+   */
+  static Map<String, String> getConditions(File file) {
+    File validators = getValidatorsFile(file);
+    if (!file.isFile() || !validators.isFile()) {
+      return Collections.emptyMap();
+    }
+    Properties props = new Properties();
+    try (InputStream is = new FileInputStream(validators)) {
+      props.load(is);
+    } catch (IOException | IllegalArgumentException e) {
+      return Collections.emptyMap();
+    }
+    if (!String.valueOf(file.length()).equals(props.getProperty(LENGTH)) || !String.valueOf(file.lastModified()).equals(props.getProperty(TIMESTAMP))) {
+      return Collections.emptyMap();
+    }
+    Map<String, String> conditions = new LinkedHashMap<>();
+    if (props.getProperty(ETAG) != null) {
+      conditions.put("If-None-Match", props.getProperty(ETAG));
+    }
+    if (props.getProperty(LAST_MODIFIED) != null) {
+      conditions.put("If-Modified-Since", props.getProperty(LAST_MODIFIED));
+    }
+    return conditions;
+  }
+
+  /**
+   * Records the validators the server sent along with the content of the given file, or forgets about the file if there are none.
+   */
+  static void store(File file, String etag, String lastModified) throws IOException {
+    File validators = getValidatorsFile(file);
+    if (etag == null && lastModified == null) {
+      Files.deleteIfExists(validators.toPath());
+      return;
+    }
+    Properties props = new Properties();
+    if (etag != null) {
+      props.setProperty(ETAG, etag);
+    }
+    if (lastModified != null) {
+      props.setProperty(LAST_MODIFIED, lastModified);
+    }
+    props.setProperty(LENGTH, String.valueOf(file.length()));
+    props.setProperty(TIMESTAMP, String.valueOf(file.lastModified()));
+
+    // written aside and moved into place, so that concurrent builds never read a partial file
+    Path tmp = Files.createTempFile(file.getParentFile().toPath(), "aether-", "-" + validators.getName());
+    try {
+      try (OutputStream os = Files.newOutputStream(tmp)) {
+        props.store(os, null);
+      }
+      try {
+        Files.move(tmp, validators.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, validators.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  private static File getValidatorsFile(File file) {
+    return new File(file.getParentFile(), file.getName() + ".validators");
+  }
+}
@@ -0,0 +1,318 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * The resources a repository does not have, remembered across builds. Builds with several repositories ask all of them for
+ * every artifact that only the last one has, and get the same 404s over and over again. The paths are kept in Bloom filters,
+ * which take a few bytes per path no matter how long it is, at the price of a small chance to report a path the repository
+ * has as missing.
+ * <p>
+ * A Bloom filter cannot forget a single path, so the paths expire in generations: new paths go to the current filter, which
+ * is retired after half of the time to live, and retired filters are dropped once their time to live is over. Release and
+ * SNAPSHOT paths have filters and times to live of their own, SNAPSHOTs are expected to show up much sooner. Deploying to the
+ * repository through the connector drops the filters of the kind of path deployed.
+ * <p>
+ * The filters are saved in a file of the local repository when the connector is closed, if anything changed since they were
+ * last saved. The file is written aside and moved into place, so that concurrent builds never read a partial filter.
+ * Concurrent builds overwrite each other's findings, which only costs a few requests.
+ * <p>
+ * Repositories with several origins have no cache, a 404 of one of them may only mean that it lags behind the others.
+ */
+class NotFoundCache {
+
+  private static final int VERSION = 1;
+
+  private static final ConcurrentMap<File, NotFoundCache> caches = new ConcurrentHashMap<>();
+
+  private final File file;
+
+  private final Generations releases;
+
+  private final Generations snapshots;
+
+  // whether there is anything to save, a path was added or filters were dropped by a deployment since the last save
+  private final AtomicBoolean dirty = new AtomicBoolean();
+
+  private NotFoundCache(File file, long releaseTtl, long snapshotTtl, int expectedEntries, double falsePositiveRate) {
+    this.file = file;
+    this.releases = new Generations(releaseTtl, expectedEntries, falsePositiveRate);
+    this.snapshots = new Generations(snapshotTtl, expectedEntries, falsePositiveRate);
+  }
+
+  /**
+   * @return The cache saved in the given file, shared by all connectors of this JVM using the same file
+   */
+  static NotFoundCache get(File file, final long releaseTtl, final long snapshotTtl, final int expectedEntries, final double falsePositiveRate) {
+    // loaded before it is shared, paths recorded meanwhile would be overwritten by the loaded filters otherwise
+    return caches.computeIfAbsent(file.getAbsoluteFile(), new Function<File, NotFoundCache>() {
+      @Override
+      public NotFoundCache apply(File file) {
+        NotFoundCache cache = new NotFoundCache(file, releaseTtl, snapshotTtl, expectedEntries, falsePositiveRate);
+        cache.load();
+        return cache;
+      }
+    });
+  }
+
+  boolean isNotFound(String path) {
+    return generations(path).mightContain(path, System.currentTimeMillis());
+  }
+
+  void notFound(String path) {
+    generations(path).add(path, System.currentTimeMillis());
+    dirty.set(true);
+  }
+
+  /**
+   * Forgets about the paths of the same kind as the given one, which was just deployed.
+   */
+  void invalidate(String path) {
+    generations(path).clear();
+    dirty.set(true);
+  }
+
+  private Generations generations(String path) {
+    return path.contains("-SNAPSHOT/") ? snapshots : releases;
+  }
+
+  private synchronized void load() {
+    if (!file.isFile()) {
+      return;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != VERSION) {
+        return;
+      }
+      releases.read(in);
+      snapshots.read(in);
+    } catch (IOException e) {
+      // a damaged file is as good as none
+      releases.clear();
+      snapshots.clear();
+    }
+  }
+
+  /**
+   * Saves the filters if anything changed since they were loaded or last saved.
+   */
+  synchronized void save() throws IOException {
+    // cleared up front, paths added while saving are saved the next time
+    if (!dirty.getAndSet(false)) {
+      return;
+    }
+    boolean saved = false;
+    try {
+      write();
+      saved = true;
+    } finally {
+      if (!saved) {
+        dirty.set(true);
+      }
+    }
+  }
+
+  private void write() throws IOException {
+    Files.createDirectories(file.getParentFile().toPath());
+    Path tmp = Files.createTempFile(file.getParentFile().toPath(), "aether-", "-" + file.getName());
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+        out.writeInt(VERSION);
+        releases.write(out);
+        snapshots.write(out);
+      }
+      try {
+        Files.move(tmp, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /**
+   * The current and the retired filter of a kind of path.
+   */
+  private static class Generations {
+
+    private final long ttl;
+
+    private final int expectedEntries;
+
+    private final int bits;
+
+    private final int hashes;
+
+    private BloomFilter current;
+
+    private BloomFilter retired;
+
+    Generations(long ttl, int expectedEntries, double falsePositiveRate) {
+      this.ttl = ttl;
+      this.expectedEntries = expectedEntries;
+      // the optimal size and number of hash functions for the expected number of entries and false positive rate
+      this.bits = (int) Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+      this.hashes = Math.max(1, (int) Math.round((double) bits / expectedEntries * Math.log(2)));
+    }
+
+    synchronized boolean mightContain(String path, long now) {
+      expire(now);
+      return current != null && current.mightContain(path) || retired != null && retired.mightContain(path);
+    }
+
+    synchronized void add(String path, long now) {
+      expire(now);
+      // a filter holding more paths than it was sized for would report too many false positives
+      if (current == null || now - current.created >= ttl / 2 || current.count >= expectedEntries) {
+        retired = current;
+        current = new BloomFilter(now, bits, hashes);
+      }
+      current.add(path);
+    }
+
+    synchronized void clear() {
+      current = null;
+      retired = null;
+    }
+
+    private void expire(long now) {
+      if (retired != null && now - retired.created >= ttl) {
+        retired = null;
+      }
+      if (current != null && now - current.created >= ttl) {
+        current = null;
+      }
+    }
+
+    synchronized void read(DataInputStream in) throws IOException {
+      current = read(in, bits, hashes);
+      retired = read(in, bits, hashes);
+    }
+
+    synchronized void write(DataOutputStream out) throws IOException {
+      write(out, current);
+      write(out, retired);
+    }
+
+    private static BloomFilter read(DataInputStream in, int bits, int hashes) throws IOException {
+      if (!in.readBoolean()) {
+        return null;
+      }
+      long created = in.readLong();
+      int count = in.readInt();
+      int storedHashes = in.readInt();
+      long[] words = new long[in.readInt()];
+      for (int i = 0; i < words.length; i++) {
+        words[i] = in.readLong();
+      }
+      if (storedHashes != hashes || words.length != BloomFilter.words(bits)) {
+        return null; // saved with another configuration
+      }
+      BloomFilter filter = new BloomFilter(created, bits, hashes);
+      System.arraycopy(words, 0, filter.words, 0, words.length);
+      filter.count = count;
+      return filter;
+    }
+
+    private static void write(DataOutputStream out, BloomFilter filter) throws IOException {
+      out.writeBoolean(filter != null);
+      if (filter != null) {
+        out.writeLong(filter.created);
+        out.writeInt(filter.count);
+        out.writeInt(filter.hashes);
+        out.writeInt(filter.words.length);
+        for (long word : filter.words) {
+          out.writeLong(word);
+        }
+      }
+    }
+  }
+
+  private static class BloomFilter {
+
+    final long created;
+
+    final long[] words;
+
+    final int hashes;
+
+    int count;
+
+    BloomFilter(long created, int bits, int hashes) {
+      this.created = created;
+      this.words = new long[words(bits)];
+      this.hashes = hashes;
+    }
+
+    static int words(int bits) {
+      return (bits + 63) / 64;
+    }
+
+    void add(String path) {
+      long hash = hash(path);
+      int h1 = (int) hash;
+      int h2 = (int) (hash >>> 32);
+      for (int i = 0; i < hashes; i++) {
+        int bit = index(h1 + i * h2);
+        words[bit >>> 6] |= 1L << bit;
+      }
+      count++;
+    }
+
+    boolean mightContain(String path) {
+      long hash = hash(path);
+      int h1 = (int) hash;
+      int h2 = (int) (hash >>> 32);
+      for (int i = 0; i < hashes; i++) {
+        int bit = index(h1 + i * h2);
+        if ((words[bit >>> 6] & (1L << bit)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private int index(int hash) {
+      return (hash & Integer.MAX_VALUE) % (words.length * 64);
+    }
+
+    /**
+     * 64-bit FNV-1a of the path, the halves of which are combined into the hash functions of the filter.
+     */
+    private static long hash(String path) {
+      long hash = 0xcbf29ce484222325L;
+      for (byte b : path.getBytes(StandardCharsets.UTF_8)) {
+        hash ^= b & 0xff;
+        hash *= 0x100000001b3L;
+      }
+      // FNV spreads the low bits poorly for short inputs, mix the result
+      hash ^= hash >>> 33;
+      hash *= 0xff51afd7ed558ccdL;
+      hash ^= hash >>> 33;
+      return hash;
+    }
+  }
+}
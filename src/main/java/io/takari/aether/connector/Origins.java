@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The equivalent servers a repository is available from, like the regional replicas of a repository manager. Each request goes
+ * to the better of two origins picked at random, judged by how long they took to answer and how often they failed lately,
+ * which sends most requests to the best origin without piling all of them on it. Once in a while the other one is picked
+ * anyway, so that an origin that got faster again is noticed.
+ * <p>
+ * An origin that failed several times in a row is considered down and left alone for a while. If all of them are down the
+ * one that comes back first is used.
+ */
+class Origins {
+
+  private static final int FAILURES_UNTIL_DOWN = 3;
+
+  private static final long DOWN_TIME = TimeUnit.SECONDS.toNanos(30);
+
+  private static final int EXPLORATION = 20;
+
+  // the weight of the latest request in the averages
+  private static final double SMOOTHING = 0.2;
+
+  private final String base;
+
+  private final List<Origin> origins;
+
+  /**
+   * @param url The URL of the repository
+   * @param alternatives The URLs of the same content elsewhere
+   */
+  Origins(String url, Collection<String> alternatives) {
+    this.base = withSlash(url);
+    List<Origin> origins = new ArrayList<>();
+    origins.add(new Origin(base));
+    for (String alternative : alternatives) {
+      origins.add(new Origin(withSlash(alternative)));
+    }
+    this.origins = Collections.unmodifiableList(origins);
+  }
+
+  int size() {
+    return origins.size();
+  }
+
+  /**
+   * @param excluded The origins not to pick, because they already failed the request
+   * @return The origin to send the next request to, or {@code null} if all are excluded
+   */
+  Origin select(Collection<Origin> excluded) {
+    long now = System.nanoTime();
+    List<Origin> candidates = new ArrayList<>();
+    for (Origin origin : origins) {
+      if (!excluded.contains(origin) && !origin.isDown(now)) {
+        candidates.add(origin);
+      }
+    }
+    if (candidates.isEmpty()) {
+      Origin first = null;
+      for (Origin origin : origins) {
+        if (!excluded.contains(origin) && (first == null || origin.getDownUntil() - first.getDownUntil() < 0)) {
+          first = origin;
+        }
+      }
+      return first;
+    }
+    if (candidates.size() == 1) {
+      return candidates.get(0);
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int i = random.nextInt(candidates.size());
+    int j = random.nextInt(candidates.size() - 1);
+    Origin a = candidates.get(i);
+    Origin b = candidates.get(j < i ? j : j + 1);
+    boolean aIsBetter = a.getCost() <= b.getCost();
+    if (random.nextInt(EXPLORATION) == 0) {
+      aIsBetter = !aIsBetter;
+    }
+    return aIsBetter ? a : b;
+  }
+
+  /**
+   * @return The URI of the same resource at the given origin
+   */
+  String resolve(Origin origin, String uri) {
+    return uri.startsWith(base) ? origin.url + uri.substring(base.length()) : uri;
+  }
+
+  /**
+   * @return The origin the given URI is at, or {@code null} if it is at none of them
+   */
+  Origin get(String uri) {
+    for (Origin origin : origins) {
+      if (uri.startsWith(origin.url)) {
+        return origin;
+      }
+    }
+    return null;
+  }
+
+  private static String withSlash(String url) {
+    return url.endsWith("/") ? url : url + "/";
+  }
+
+  static class Origin {
+
+    final String url;
+
+    // smoothed nanoseconds to answer, -1 until known
+    private double latency = -1;
+
+    private double errorRate;
+
+    private int failures;
+
+    private long downUntil;
+
+    Origin(String url) {
+      this.url = url;
+    }
+
+    synchronized void succeeded(long latency) {
+      this.latency = this.latency < 0 ? latency : this.latency + SMOOTHING * (latency - this.latency);
+      errorRate -= SMOOTHING * errorRate;
+      failures = 0;
+    }
+
+    synchronized void failed() {
+      errorRate += SMOOTHING * (1 - errorRate);
+      if (++failures >= FAILURES_UNTIL_DOWN) {
+        downUntil = System.nanoTime() + DOWN_TIME;
+        failures = 0;
+      }
+    }
+
+    synchronized boolean isDown(long now) {
+      return downUntil != 0 && now - downUntil < 0;
+    }
+
+    synchronized long getDownUntil() {
+      return downUntil;
+    }
+
+    /**
+     * @return How bad the origin is, origins we know nothing about yet are tried first
+     */
+    synchronized double getCost() {
+      if (latency < 0) {
+        return errorRate > 0 ? Double.MAX_VALUE : 0;
+      }
+      return latency * (1 + 10 * errorRate);
+    }
+
+    @Override
+    public String toString() {
+      return url;
+    }
+  }
+}
@@ -0,0 +1,314 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.eclipse.aether.util.concurrency.WorkerThreadFactory;
+
+/**
+ * Runs the transfers of all connectors of the JVM on one pool of threads. Builds commonly use several repositories that are
+ * mirrored by the same repository manager, and a pool of threads per connector would open far more connections to it than
+ * it can take. The scheduler counts the transfers running at once overall and per host, and the transfers of a connector
+ * only start while these counts are below the limits of the connector, next to its own limit. The limits are those of the
+ * session the connector was created for, so connectors of different sessions do not change each other's limits.
+ * Connectors with transfers waiting take turns, so that a connector with a long queue does not hold up the others. The
+ * transfers of a connector are started by their priority. A connector may run its transfers on threads of its own, such as
+ * virtual threads, they are then started within the same limits.
+ * <p>
+ * The limit per host can also adapt to the host, growing while it answers in time and halving when it throttles us or its
+ * answers slow down. What is learned about a host is kept for the life of the JVM and applies to the connectors that adapt
+ * their limit. The limits are published over JMX as {@value #OBJECT_NAME}.
+ */
+class TransferScheduler implements TransferSchedulerMXBean {
+
+  static final String OBJECT_NAME = "io.takari.aether.connector:type=TransferScheduler";
+
+  static final TransferScheduler INSTANCE = new TransferScheduler().register();
+
+  //
+  // Adapting the limit of a host works much like the congestion window of TCP. A host starts with a few transfers and gets one
+  // more for each transfer answered in time, until a transfer is throttled or its answer takes far longer than usual. From
+  // then on the limit halves for such a transfer and grows by one for as many transfers answered in time as the limit.
+  // Transfers that were already under way when the limit was cut do not cut it again.
+  //
+  private static final int INITIAL_LIMIT = 4;
+
+  private static final int LATENCY_SAMPLES = 8;
+
+  private static final int LATENCY_SPIKE = 3;
+
+  /**
+   * A task that knows how urgent it is. Tasks with a higher priority are started first, tasks of the same priority in the
+   * order they were queued. Other tasks have a priority of 0.
+   */
+  interface Prioritized {
+    long getPriority();
+  }
+
+  static long getPriority(Runnable task) {
+    return task instanceof Prioritized ? ((Prioritized) task).getPriority() : 0;
+  }
+
+  private final ExecutorService workers = Executors.newCachedThreadPool(new WorkerThreadFactory(AetherRepositoryConnector.class.getSimpleName() + "-"));
+
+  // the queues with transfers waiting, in the order they take turns
+  private final ArrayDeque<Queue> waiting = new ArrayDeque<>();
+
+  private final Map<String, Integer> runningPerHost = new HashMap<>();
+
+  private int running;
+
+  private final Map<String, HostLimit> hostLimits = new HashMap<>();
+
+  /**
+   * Reports a transfer the host answered to a connector that adapts its limit per host.
+   *
+   * @param started When the request was sent, in {@link System#nanoTime()}
+   * @param latency The nanoseconds it took the host to answer
+   * @param maxRunningPerHost The limit per host of the connector, which the adapted limit does not grow beyond
+   */
+  synchronized void answered(String host, long started, long latency, int maxRunningPerHost) {
+    HostLimit limit = getHostLimit(host);
+    if (limit.samples >= LATENCY_SAMPLES && latency > LATENCY_SPIKE * limit.latency) {
+      limit.decrease(started);
+    } else if (getRunning(host) >= limit.get(maxRunningPerHost)) {
+      // only while the limit is what holds the transfers back, the host has not shown it can take more otherwise
+      limit.increase(maxRunningPerHost);
+    }
+    limit.latency = limit.samples == 0 ? latency : limit.latency + (latency - limit.latency) / LATENCY_SAMPLES;
+    limit.samples++;
+    dispatch();
+  }
+
+  /**
+   * Reports a transfer the host throttled, by status or by dropping the connection, to a connector that adapts its limit per
+   * host.
+   *
+   * @param started When the request was sent, in {@link System#nanoTime()}
+   */
+  synchronized void throttled(String host, long started) {
+    getHostLimit(host).decrease(started);
+  }
+
+  private HostLimit getHostLimit(String host) {
+    HostLimit limit = hostLimits.get(host);
+    if (limit == null) {
+      limit = new HostLimit();
+      hostLimits.put(host, limit);
+    }
+    return limit;
+  }
+
+  private int getLimit(Queue queue) {
+    if (!queue.adaptive) {
+      return queue.maxRunningPerHost;
+    }
+    HostLimit limit = hostLimits.get(queue.host);
+    return limit != null ? limit.get(queue.maxRunningPerHost) : Math.min(INITIAL_LIMIT, queue.maxRunningPerHost);
+  }
+
+  @Override
+  public synchronized Map<String, Integer> getRunningTransfers() {
+    return new TreeMap<>(runningPerHost);
+  }
+
+  @Override
+  public synchronized Map<String, Integer> getTransferLimits() {
+    Map<String, Integer> limits = new TreeMap<>();
+    for (Map.Entry<String, HostLimit> limit : hostLimits.entrySet()) {
+      limits.put(limit.getKey(), limit.getValue().get(Integer.MAX_VALUE));
+    }
+    return limits;
+  }
+
+  private TransferScheduler register() {
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+    } catch (JMException | SecurityException e) {
+      // already registered by another class loader, or not allowed, the limits are not published then
+    }
+    return this;
+  }
+
+  /**
+   * @param host The host the transfers of the queue go to
+   * @param maxRunning The maximum number of transfers of the queue running at once
+   * @param maxRunningOverall The maximum number of transfers of all connectors running at once while those of the queue start
+   * @param maxRunningPerHost The maximum number of transfers of all connectors to the host running at once while those of the
+   *          queue start
+   * @param adaptive Whether the limit per host adapts to the host, up to {@code maxRunningPerHost}
+   * @param threads What runs the transfers of the queue once they are started, {@code null} for the threads of the scheduler
+   * @return A new queue for the transfers of a connector
+   */
+  Executor newQueue(String host, int maxRunning, int maxRunningOverall, int maxRunningPerHost, boolean adaptive, Executor threads) {
+    return new Queue(host, maxRunning, maxRunningOverall, maxRunningPerHost, adaptive, threads);
+  }
+
+  private class Queue implements Executor {
+
+    final String host;
+
+    final int maxRunning;
+
+    final int maxRunningOverall;
+
+    final int maxRunningPerHost;
+
+    final boolean adaptive;
+
+    final Executor threads;
+
+    final PriorityQueue<Entry> tasks = new PriorityQueue<>();
+
+    int running;
+
+    long queued;
+
+    Queue(String host, int maxRunning, int maxRunningOverall, int maxRunningPerHost, boolean adaptive, Executor threads) {
+      this.host = host;
+      this.maxRunning = Math.max(1, maxRunning);
+      this.maxRunningOverall = Math.max(1, maxRunningOverall);
+      this.maxRunningPerHost = Math.max(1, maxRunningPerHost);
+      this.adaptive = adaptive;
+      this.threads = threads != null ? threads : workers;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+      synchronized (TransferScheduler.this) {
+        if (tasks.isEmpty()) {
+          waiting.add(this);
+        }
+        tasks.add(new Entry(task, queued++));
+        dispatch();
+      }
+    }
+  }
+
+  private static class Entry implements Comparable<Entry> {
+
+    final Runnable task;
+
+    final long priority;
+
+    final long sequence;
+
+    Entry(Runnable task, long sequence) {
+      this.task = task;
+      this.priority = getPriority(task);
+      this.sequence = sequence;
+    }
+
+    @Override
+    public int compareTo(Entry other) {
+      if (priority != other.priority) {
+        return priority > other.priority ? -1 : 1;
+      }
+      return sequence < other.sequence ? -1 : sequence > other.sequence ? 1 : 0;
+    }
+  }
+
+  /**
+   * Starts as many waiting transfers as the limits allow, one of each queue in turn.
+   */
+  private void dispatch() {
+    boolean started = true;
+    while (started) {
+      started = false;
+      for (int i = waiting.size(); i > 0; i--) {
+        Queue queue = waiting.poll();
+        if (queue.running < queue.maxRunning && running < queue.maxRunningOverall && getRunning(queue.host) < getLimit(queue)) {
+          start(queue, queue.tasks.poll().task);
+          started = true;
+        }
+        if (!queue.tasks.isEmpty()) {
+          waiting.add(queue);
+        }
+      }
+    }
+  }
+
+  private void start(final Queue queue, final Runnable task) {
+    running++;
+    queue.running++;
+    runningPerHost.put(queue.host, getRunning(queue.host) + 1);
+    queue.threads.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          task.run();
+        } finally {
+          finished(queue);
+        }
+      }
+    });
+  }
+
+  private synchronized void finished(Queue queue) {
+    running--;
+    queue.running--;
+    int runningOnHost = getRunning(queue.host) - 1;
+    if (runningOnHost > 0) {
+      runningPerHost.put(queue.host, runningOnHost);
+    } else {
+      runningPerHost.remove(queue.host);
+    }
+    dispatch();
+  }
+
+  private int getRunning(String host) {
+    Integer running = runningPerHost.get(host);
+    return running != null ? running : 0;
+  }
+
+  private static class HostLimit {
+
+    double limit = INITIAL_LIMIT;
+
+    boolean slowStart = true;
+
+    boolean decreased;
+
+    long lastDecrease;
+
+    // smoothed latency in nanoseconds
+    double latency;
+
+    int samples;
+
+    int get(int maxLimit) {
+      return Math.min((int) limit, maxLimit);
+    }
+
+    void increase(int maxLimit) {
+      limit = Math.min(limit + (slowStart ? 1 : 1 / limit), maxLimit);
+    }
+
+    void decrease(long started) {
+      if (decreased && started - lastDecrease < 0) {
+        return;
+      }
+      limit = Math.max(1, limit / 2);
+      slowStart = false;
+      decreased = true;
+      lastDecrease = System.nanoTime();
+    }
+  }
+}
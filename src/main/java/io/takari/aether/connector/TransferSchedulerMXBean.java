@@ -0,0 +1,26 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector;
+
+import java.util.Map;
+
+/**
+ * The state of the transfers of all connectors of the JVM, as published over JMX.
+ */
+public interface TransferSchedulerMXBean {
+
+  /**
+   * @return The number of transfers running, by host
+   */
+  Map<String, Integer> getRunningTransfers();
+
+  /**
+   * @return The current limit of the transfers running at once, by host, for the hosts the limit adapts to
+   */
+  Map<String, Integer> getTransferLimits();
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs each task on a virtual thread of its own, as many at once as there are permits. Transfers mostly wait for the network,
+ * which costs a virtual thread next to nothing, so far more of them can be in flight than a pool of platform threads allows.
+ * Tasks waiting for a permit park their virtual thread. The connector hands it to the {@link TransferScheduler}, which starts
+ * the transfers within its limits overall and per host.
+ * <p>
+ * Virtual threads exist as of Java 21 and are looked up reflectively, the connector is built for Java 8.
+ */
+class VirtualThreadExecutor implements Executor {
+
+  private final ThreadFactory threadFactory;
+
+  private final Semaphore permits;
+
+  VirtualThreadExecutor(ThreadFactory threadFactory, int permits) {
+    this.threadFactory = threadFactory;
+    this.permits = new Semaphore(permits);
+  }
+
+  /**
+   * @param name The prefix of the names of the threads
+   * @param permits The maximum number of tasks running at once
+   * @return The executor, or {@code null} if the runtime has no virtual threads
+   */
+  static VirtualThreadExecutor newInstance(String name, int permits) {
+    ThreadFactory threadFactory = newThreadFactory(name);
+    return threadFactory != null ? new VirtualThreadExecutor(threadFactory, permits) : null;
+  }
+
+  private static ThreadFactory newThreadFactory(String name) {
+    try {
+      // Thread.ofVirtual().name(name, 0).factory()
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+      builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name, 0L);
+      return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return null;
+    }
+  }
+
+  @Override
+  public void execute(final Runnable task) {
+    threadFactory.newThread(new Runnable() {
+      @Override
+      public void run() {
+        permits.acquireUninterruptibly();
+        try {
+          task.run();
+        } finally {
+          permits.release();
+        }
+      }
+    }).start();
+  }
+}
@@ -6,8 +6,12 @@
  */
 package io.takari.aether.okhttp;
 
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.nio.channels.ReadableByteChannel;
 import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
@@ -17,10 +21,17 @@ import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
@@ -30,21 +41,58 @@ import io.takari.aether.client.AetherClient;
 import io.takari.aether.client.AetherClientAuthentication;
 import io.takari.aether.client.AetherClientConfig;
 import io.takari.aether.client.AetherClientProxy;
+import io.takari.aether.client.RequestListener;
 import io.takari.aether.client.Response;
+import io.takari.aether.client.ResponseCallback;
+import io.takari.aether.client.RetryPolicy;
 import io.takari.aether.client.RetryableSource;
 import okhttp3.Authenticator;
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
 import okhttp3.ConnectionSpec;
 import okhttp3.Credentials;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
 import okhttp3.Route;
 import okhttp3.internal.tls.OkHostnameVerifier;
 import okio.BufferedSink;
 
 public class OkHttpAetherClient implements AetherClient {
 
+  //
+  // Only metadata and checksums are worth caching: they are small and revalidated over and over, whereas a single artifact
+  // could evict all of them. A cache directory can only be used by one cache instance at a time, so clients configured with
+  // the same directory share it.
+  //
+  private static final Pattern CACHEABLE = Pattern.compile(".*(/maven-metadata\\.xml|\\.md5|\\.sha\\d*)");
+
+  private static final ConcurrentMap<File, Cache> caches = new ConcurrentHashMap<>();
+
+  //
+  // All clients derive from one client and share its connection pool and dispatcher, as long as they are configured alike.
+  // Connections to a host are then reused across the repositories and sessions of the JVM instead of each client making its
+  // own, and deriving also shares the default TLS socket factory, without which the connections of different clients would
+  // never match. The client the others derive from is built with the pool and dispatcher of the first client, so that it
+  // has none of its own.
+  //
+  // Closing a client releases nothing, Aether closes the connectors after every batch of transfers and the next batch should
+  // find the connections of the last one still open. The idle connections expire after the keep-alive duration instead, and
+  // the pools and dispatchers are dropped once no client refers to them anymore.
+  //
+  private static OkHttpClient base; // guarded by pools
+
+  private static final Map<List<Object>, WeakReference<ConnectionPool>> pools = new HashMap<>();
+
+  private static final Map<List<Object>, WeakReference<Dispatcher>> dispatchers = new HashMap<>();
+
   private final Authenticator PROXY_AUTH =  new Authenticator() {
 
     @Override
@@ -82,15 +130,21 @@ public class OkHttpAetherClient implements AetherClient {
   private final Map<String, String> headers;
   private final AetherClientConfig config;
   private final OkHttpClient httpClient;
+  private final OkHttpClient cachingClient;
 
   public OkHttpAetherClient(AetherClientConfig config) {
     this.config = config;
 
     // headers are modified during http auth handshake
     // make a copy to avoid cross-talk among client instances
-    headers = new HashMap<String, String>();
+    // the auth handshake may happen concurrently, in the threads of the connector and the dispatcher
+    headers = new ConcurrentHashMap<String, String>();
     if (config.getHeaders() != null) {
-      headers.putAll(config.getHeaders());
+      for (Map.Entry<String, String> header : config.getHeaders().entrySet()) {
+        if (header.getValue() != null) {
+          headers.put(header.getKey(), header.getValue());
+        }
+      }
     }
 
     //
@@ -100,13 +154,23 @@ public class OkHttpAetherClient implements AetherClient {
       headers.put("User-Agent", config.getUserAgent());
     }
 
-    OkHttpClient.Builder builder = new OkHttpClient.Builder() //
+    OkHttpClient.Builder builder;
+    synchronized (pools) {
+      ConnectionPool pool = getPool(config.getMaxIdleConnections(), config.getKeepAliveDuration());
+      Dispatcher dispatcher = getDispatcher(config.getMaxRequests(), config.getMaxRequestsPerHost());
+      if (base == null) {
+        base = new OkHttpClient.Builder().connectionPool(pool).dispatcher(dispatcher).build();
+      }
+      builder = base.newBuilder().connectionPool(pool).dispatcher(dispatcher);
+    }
+    builder //
     	.connectionSpecs(Arrays.asList(ConnectionSpec.COMPATIBLE_TLS, ConnectionSpec.CLEARTEXT))//Fixes https://github.com/takari/aether-connector-okhttp/issues/20
         .proxy(getProxy(config.getProxy())) //
         .hostnameVerifier(OkHostnameVerifier.INSTANCE) //
         // TODO looks odd, why do I need to use the same Authenticator twice?
         .authenticator(PROXY_AUTH) // see #authenticate below
-        .proxyAuthenticator(PROXY_AUTH) //
+        // connections are only shared by clients with the same proxy authenticator, which only matters with proxy authentication
+        .proxyAuthenticator(config.getProxy() != null && config.getProxy().getAuthentication() != null ? PROXY_AUTH : Authenticator.NONE) //
         .connectTimeout(config.getConnectionTimeout(), TimeUnit.MILLISECONDS) //
         .readTimeout(config.getRequestTimeout(), TimeUnit.MILLISECONDS);
     if (config.getSslSocketFactory() != null) {
@@ -120,7 +184,121 @@ public class OkHttpAetherClient implements AetherClient {
     if (config.getHostnameVerifier() != null) {
       builder.hostnameVerifier(config.getHostnameVerifier());
     }
+    //
+    // HTTP/2 multiplexes the concurrent requests to a server over a single connection, which saves the connections and
+    // handshakes HTTP/1.1 needs for each of them. Over TLS it is negotiated with the server, a cleartext server has to be known
+    // to support it.
+    //
+    if (config.isH2cPriorKnowledge()) {
+      builder.protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+    } else if (!config.isHttp2()) {
+      builder.protocols(Collections.singletonList(Protocol.HTTP_1_1));
+    }
+    builder.eventListenerFactory(newEventListenerFactory(config.getRequestListener()));
+    if (config.getPingInterval() > 0) {
+      builder.pingInterval(config.getPingInterval(), TimeUnit.MILLISECONDS);
+    }
     this.httpClient = builder.build();
+    if (config.getCacheDirectory() != null) {
+      this.cachingClient = httpClient.newBuilder().cache(getCache(config.getCacheDirectory(), config.getCacheSize())).build();
+    } else {
+      this.cachingClient = httpClient;
+    }
+  }
+
+  /**
+   * Reports each request to the listener, the retries are separate calls and the requests of a call are timed one by one from
+   * the moment they are sent, so that neither the waits between retries nor the time to connect count as latency.
+   */
+  private static EventListener.Factory newEventListenerFactory(final RequestListener listener) {
+    return new EventListener.Factory() {
+      @Override
+      public EventListener create(Call call) {
+        return new EventListener() {
+
+          // until the request is sent, when the call started
+          private volatile long started = System.nanoTime();
+
+          @Override
+          public void requestHeadersStart(Call call) {
+            started = System.nanoTime();
+          }
+
+          @Override
+          public void responseHeadersEnd(Call call, okhttp3.Response response) {
+            Request request = response.request();
+            listener.answered(request.method(), request.url().toString(), response.code(), started, System.nanoTime() - started);
+          }
+
+          @Override
+          public void callFailed(Call call, IOException e) {
+            if (!call.isCanceled()) {
+              listener.failed(call.request().method(), call.request().url().toString(), e, started);
+            }
+          }
+        };
+      }
+    };
+  }
+
+  // guarded by pools
+  private static ConnectionPool getPool(int maxIdleConnections, long keepAliveDuration) {
+    List<Object> key = Arrays.<Object> asList(maxIdleConnections, keepAliveDuration);
+    ConnectionPool pool = getShared(pools, key);
+    if (pool == null) {
+      pool = new ConnectionPool(maxIdleConnections, keepAliveDuration, TimeUnit.MILLISECONDS);
+      pools.put(key, new WeakReference<>(pool));
+    }
+    return pool;
+  }
+
+  // guarded by pools
+  private static Dispatcher getDispatcher(int maxRequests, int maxRequestsPerHost) {
+    List<Object> key = Arrays.<Object> asList(maxRequests, maxRequestsPerHost);
+    Dispatcher dispatcher = getShared(dispatchers, key);
+    if (dispatcher == null) {
+      dispatcher = new Dispatcher();
+      if (maxRequests > 0) {
+        dispatcher.setMaxRequests(maxRequests);
+      }
+      if (maxRequestsPerHost > 0) {
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+      }
+      dispatchers.put(key, new WeakReference<>(dispatcher));
+    }
+    return dispatcher;
+  }
+
+  // guarded by pools, drops what no client refers to anymore along the way
+  private static <T> T getShared(Map<List<Object>, WeakReference<T>> shared, List<Object> key) {
+    for (Iterator<WeakReference<T>> references = shared.values().iterator(); references.hasNext();) {
+      if (references.next().get() == null) {
+        references.remove();
+      }
+    }
+    WeakReference<T> reference = shared.get(key);
+    return reference != null ? reference.get() : null;
+  }
+
+  private static Cache getCache(File directory, long maxSize) {
+    directory = directory.getAbsoluteFile();
+    Cache cache = caches.get(directory);
+    if (cache == null) {
+      Cache created = new Cache(directory, maxSize);
+      cache = caches.putIfAbsent(directory, created);
+      if (cache == null) {
+        cache = created;
+      }
+    }
+    return cache;
+  }
+
+  /**
+   * @return The client to request the given resource with, the one with the cache for the resources we cache
+   */
+  private OkHttpClient client(String uri) {
+    int query = uri.indexOf('?');
+    return CACHEABLE.matcher(query >= 0 ? uri.substring(0, query) : uri).matches() ? cachingClient : httpClient;
   }
 
   @Override
@@ -158,7 +336,7 @@ public class OkHttpAetherClient implements AetherClient {
   public Response get(String uri) throws IOException {
     Response response;
     do {
-      response = execute(httpClient, builder(uri, null).get().build());
+      response = execute(client(uri), builder(uri, null).get().build());
     } while (response == null);
     return response;
   }
@@ -167,19 +345,114 @@ public class OkHttpAetherClient implements AetherClient {
   public Response get(String uri, Map<String, String> requestHeaders) throws IOException {
     Response response;
     do {
-      response = execute(httpClient, builder(uri, requestHeaders).get().build());
+      response = execute(client(uri), builder(uri, requestHeaders).get().build());
     } while (response == null);
     return response;
   }
 
+  @Override
+  public Future<Response> getAsync(final String uri) throws IOException {
+    final CompletableFuture<Response> future = new CompletableFuture<>();
+    client(uri).newCall(builder(uri, null).get().build()).enqueue(new Callback() {
+      @Override
+      public void onFailure(Call call, IOException e) {
+        future.completeExceptionally(e);
+      }
+
+      @Override
+      public void onResponse(Call call, okhttp3.Response response) {
+        try {
+          okhttp3.Response buffered;
+          try (ResponseBody body = response.body()) {
+            buffered = response.newBuilder().body(ResponseBody.create(body.contentType(), body.bytes())).build();
+          }
+          if (buffered.code() == HttpURLConnection.HTTP_UNAUTHORIZED && config.getAuthentication() != null && buffered.request().header("Authorization") == null) {
+            // let the blocking request take care of the authentication handshake
+            future.complete(get(uri));
+          } else {
+            future.complete(new ResponseAdapter(buffered));
+          }
+        } catch (IOException | RuntimeException e) {
+          future.completeExceptionally(e);
+        }
+      }
+    });
+    return future;
+  }
+
+  @Override
+  public Closeable getAsync(final String uri, final Map<String, String> requestHeaders, final ResponseCallback callback) throws IOException {
+    final Call call = client(uri).newCall(builder(uri, requestHeaders).get().build());
+    call.enqueue(new Callback() {
+      @Override
+      public void onFailure(Call call, IOException e) {
+        callback.onFailure(e);
+      }
+
+      @Override
+      public void onResponse(Call call, okhttp3.Response response) {
+        Response adapter;
+        if (response.code() == HttpURLConnection.HTTP_UNAUTHORIZED && config.getAuthentication() != null && response.request().header("Authorization") == null) {
+          // the server wants the credentials we have, send them right away like the blocking requests do
+          headers.put("Authorization", toHeaderValue(config.getAuthentication()));
+          response.close();
+          try {
+            adapter = get(uri, requestHeaders);
+          } catch (IOException e) {
+            callback.onFailure(e);
+            return;
+          }
+        } else {
+          try {
+            // an error to retry is retried right here, on the thread of the dispatcher
+            adapter = execute(client(uri), response.request(), response);
+            if (adapter == null) {
+              adapter = get(uri, requestHeaders);
+            }
+          } catch (IOException e) {
+            callback.onFailure(e);
+            return;
+          }
+        }
+        callback.onResponse(adapter);
+      }
+    });
+    return cancellation(call);
+  }
+
+  @Override
+  public Closeable headAsync(String uri, final ResponseCallback callback) throws IOException {
+    final Call call = httpClient.newCall(builder(uri, null).head().build());
+    call.enqueue(new Callback() {
+      @Override
+      public void onFailure(Call call, IOException e) {
+        callback.onFailure(e);
+      }
+
+      @Override
+      public void onResponse(Call call, okhttp3.Response response) {
+        callback.onResponse(new ResponseAdapter(response));
+      }
+    });
+    return cancellation(call);
+  }
+
+  private static Closeable cancellation(final Call call) {
+    return new Closeable() {
+      @Override
+      public void close() {
+        call.cancel();
+      }
+    };
+  }
+
   @Override
   // i need the response
   public Response put(String uri, final RetryableSource source) throws IOException {
     Response response;
     do {
-      // disable response caching
-      // connection.addRequestProperty("Cache-Control", "no-cache") may work too
-      OkHttpClient httpClient = this.httpClient.newBuilder().cache(null).build();
+      // uploads are not cached, but they evict the cached response of what they replace
+      OkHttpClient httpClient = client(uri);
 
       final MediaType mediaType = MediaType.parse("application/octet-stream");
       final RequestBody body = new RequestBody() {
@@ -212,17 +485,35 @@ public class OkHttpAetherClient implements AetherClient {
   }
 
   private Response execute(OkHttpClient httpClient, Request request) throws IOException {
-    okhttp3.Response response = httpClient.newCall(request).execute();
-    switch (response.code()) {
-      case HttpURLConnection.HTTP_UNAUTHORIZED:
-        if (config.getAuthentication() != null && !headers.containsKey("Authorization")) {
-          headers.put("Authorization", toHeaderValue(config.getAuthentication()));
-          response.body().close(); // help connection pool reclaim the connection
-          return null; // retry
-        }
-        break;
+    return execute(httpClient, request, httpClient.newCall(request).execute());
+  }
+
+  /**
+   * Sends the request again for as long as the server answers with an error the retry policy wants us to retry.
+   *
+   * @param response The first answer to the request
+   */
+  private Response execute(OkHttpClient httpClient, Request request, okhttp3.Response response) throws IOException {
+    for (int retry = 1;; retry++) {
+      switch (response.code()) {
+        case HttpURLConnection.HTTP_UNAUTHORIZED:
+          // a concurrent request may already have gone through the handshake, retry unless we sent the credentials ourselves
+          if (config.getAuthentication() != null && request.header("Authorization") == null) {
+            headers.put("Authorization", toHeaderValue(config.getAuthentication()));
+            response.body().close(); // help connection pool reclaim the connection
+            return null; // retry
+          }
+          break;
+      }
+      long delay = config.getRetryPolicy().getDelay(response.code(), response.header("Retry-After"), retry);
+      if (delay < 0) {
+        config.getRetryPolicy().answered(response.code());
+        return new ResponseAdapter(response); // do not retry
+      }
+      response.close();
+      RetryPolicy.sleep(delay);
+      response = httpClient.newCall(request).execute();
     }
-    return new ResponseAdapter(response); // do not retry
   }
 
   private String toHeaderValue(AetherClientAuthentication auth) {
@@ -297,6 +588,11 @@ public class OkHttpAetherClient implements AetherClient {
       return conn.body().byteStream();
     }
 
+    @Override
+    public ReadableByteChannel getChannel() throws IOException {
+      return conn.body().source();
+    }
+
     @Override
     public void close() {
       if (conn != null) {
@@ -305,6 +601,10 @@ public class OkHttpAetherClient implements AetherClient {
     }
   }
 
+  /**
+   * Leaves the connections open for the clients that come next, they are shared with the other clients configured alike and
+   * expire after the keep-alive duration.
+   */
   @Override
   public void close() {}
 }
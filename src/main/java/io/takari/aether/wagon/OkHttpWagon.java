@@ -14,6 +14,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -39,6 +40,7 @@ import io.takari.aether.client.AetherClient;
 import io.takari.aether.client.AetherClientAuthentication;
 import io.takari.aether.client.AetherClientConfig;
 import io.takari.aether.client.AetherClientProxy;
+import io.takari.aether.client.BufferPool;
 import io.takari.aether.client.Response;
 import io.takari.aether.client.RetryableSource;
 import io.takari.aether.okhttp.OkHttpAetherClient;
@@ -118,10 +120,14 @@ public class OkHttpWagon extends StreamWagon {
         closer.register(is);
         closer.register(os);
         int n = 0;
-        final byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
-        while (-1 != (n = is.read(buffer))) {
-          write(os, n, buffer);
-          fireTransferProgress(transferEvent, buffer, n);
+        final ByteBuffer buffer = BufferPool.getDefault().acquire();
+        try {
+          while (-1 != (n = is.read(buffer.array(), 0, buffer.capacity()))) {
+            write(os, n, buffer.array());
+            fireTransferProgress(transferEvent, buffer.array(), n);
+          }
+        } finally {
+          BufferPool.getDefault().release(buffer);
         }
       } finally {
         closer.close();
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+public class VirtualThreadExecutorTest extends TestCase {
+
+  private static final int TASKS = 6;
+
+  public void testVirtualThreadsAreOnlyUsedWhenTheRuntimeHasThem() throws Exception {
+    Method isVirtual;
+    try {
+      isVirtual = Thread.class.getMethod("isVirtual");
+    } catch (NoSuchMethodException e) {
+      isVirtual = null;
+    }
+    VirtualThreadExecutor executor = VirtualThreadExecutor.newInstance("test-virtual-", 1);
+    if (isVirtual == null) {
+      // before Java 21, the connector runs its transfers on the threads of the scheduler then
+      assertNull(executor);
+      return;
+    }
+
+    final AtomicReference<Thread> thread = new AtomicReference<>();
+    final CountDownLatch done = new CountDownLatch(1);
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        thread.set(Thread.currentThread());
+        done.countDown();
+      }
+    });
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    assertTrue(thread.get().getName(), (Boolean) isVirtual.invoke(thread.get()));
+    assertTrue(thread.get().getName(), thread.get().getName().startsWith("test-virtual-"));
+  }
+
+  public void testTasksRunWithinThePermits() throws Exception {
+    VirtualThreadExecutor executor = new VirtualThreadExecutor(Executors.defaultThreadFactory(), 2);
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(TASKS);
+    for (int i = 0; i < TASKS; i++) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          int n = running.incrementAndGet();
+          int max;
+          while (n > (max = maxRunning.get()) && !maxRunning.compareAndSet(max, n)) {
+          }
+          try {
+            Thread.sleep(50);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } finally {
+            running.decrementAndGet();
+            done.countDown();
+          }
+        }
+      });
+    }
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    assertEquals(2, maxRunning.get());
+  }
+}
@@ -20,6 +20,7 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.inject.Inject;
@@ -31,11 +32,14 @@ import org.eclipse.aether.artifact.DefaultArtifact;
 import org.eclipse.aether.internal.test.util.TestFileProcessor;
 import org.eclipse.aether.internal.test.util.TestFileUtils;
 import org.eclipse.aether.internal.test.util.TestUtils;
+import org.eclipse.aether.metadata.DefaultMetadata;
+import org.eclipse.aether.metadata.Metadata;
 import org.eclipse.aether.repository.Authentication;
 import org.eclipse.aether.repository.Proxy;
 import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.aether.repository.RepositoryPolicy;
 import org.eclipse.aether.spi.connector.ArtifactDownload;
+import org.eclipse.aether.spi.connector.MetadataDownload;
 import org.eclipse.aether.spi.connector.RepositoryConnector;
 import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
 import org.eclipse.aether.spi.io.FileProcessor;
@@ -56,6 +60,7 @@ import io.takari.aether.client.AetherClientProxy;
 import io.takari.aether.client.Response;
 import io.takari.aether.okhttp.OkHttpAetherClient;
 import okhttp3.Headers;
+import okhttp3.Protocol;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
@@ -181,6 +186,283 @@ public class AetherMockWebserverConnectorTest extends InjectedTestCase {
     downloadArtifact();
   }
 
+  public void testArtifactDownloadWithChecksumHeader() throws Exception {
+    server.enqueue(new MockResponse().setBody(ARTIFACT_CONTENT).addHeader("X-Checksum-Sha1", sha1(ARTIFACT_CONTENT)));
+    server.start();
+    downloadArtifact();
+
+    // the checksum file is not requested
+    assertEquals(1, server.getRequestCount());
+  }
+
+  public void testArtifactDownloadWithGoogleChecksumHeader() throws Exception {
+    server.enqueue(new MockResponse().setBody(ARTIFACT_CONTENT).addHeader("x-goog-meta-checksum-sha1", sha1(ARTIFACT_CONTENT)));
+    server.start();
+    downloadArtifact();
+
+    assertEquals(1, server.getRequestCount());
+  }
+
+  public void testArtifactDownloadWithMismatchingChecksumHeader() throws Exception {
+    server.enqueue(new MockResponse().setBody(ARTIFACT_CONTENT).addHeader("X-Checksum-Sha1", sha1("something else")));
+    server.start();
+
+    File artifactFile = TestFileUtils.createTempFile("");
+    ArtifactDownload download = new ArtifactDownload(artifact(ARTIFACT_CONTENT), null, artifactFile, RepositoryPolicy.CHECKSUM_POLICY_FAIL);
+    connector().get(Arrays.asList(download), null);
+    assertNotNull(download.getException());
+    assertEquals(1, server.getRequestCount());
+  }
+
+  public void testMetadataIsRequestedConditionally() throws Exception {
+    String metadataContent = "<metadata/>";
+    server.enqueue(new MockResponse().setBody(metadataContent).addHeader("ETag", "\"v1\"").addHeader("Last-Modified", "Tue, 01 Sep 2026 10:00:00 GMT").addHeader("X-Checksum-Sha1", sha1(metadataContent)));
+    server.enqueue(new MockResponse().setResponseCode(304));
+    server.start();
+
+    File metadataFile = new File(TestFileUtils.createTempDir(), "maven-metadata-repo.xml");
+    downloadMetadata(metadataFile);
+    assertEquals(metadataContent, Files.toString(metadataFile, Charsets.UTF_8));
+    RecordedRequest first = server.takeRequest();
+    assertNull(first.getHeader("If-None-Match"));
+
+    downloadMetadata(metadataFile);
+    assertEquals(metadataContent, Files.toString(metadataFile, Charsets.UTF_8));
+    RecordedRequest second = server.takeRequest();
+    assertEquals("\"v1\"", second.getHeader("If-None-Match"));
+    assertEquals("Tue, 01 Sep 2026 10:00:00 GMT", second.getHeader("If-Modified-Since"));
+    assertEquals(2, server.getRequestCount());
+  }
+
+  public void testMetadataModifiedLocallyIsNotRequestedConditionally() throws Exception {
+    String metadataContent = "<metadata/>";
+    server.enqueue(new MockResponse().setBody(metadataContent).addHeader("ETag", "\"v1\"").addHeader("X-Checksum-Sha1", sha1(metadataContent)));
+    server.enqueue(new MockResponse().setBody(metadataContent).addHeader("ETag", "\"v1\"").addHeader("X-Checksum-Sha1", sha1(metadataContent)));
+    server.start();
+
+    File metadataFile = new File(TestFileUtils.createTempDir(), "maven-metadata-repo.xml");
+    downloadMetadata(metadataFile);
+    Files.write("<metadata></metadata>", metadataFile, Charsets.UTF_8);
+
+    downloadMetadata(metadataFile);
+    assertEquals(metadataContent, Files.toString(metadataFile, Charsets.UTF_8));
+    server.takeRequest();
+    assertNull(server.takeRequest().getHeader("If-None-Match"));
+  }
+
+  public void testMetadataIsRevalidatedThroughTheCache() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.cacheDirectory", TestFileUtils.createTempDir().getAbsolutePath());
+    String metadataContent = "<metadata/>";
+    server.enqueue(new MockResponse().setBody(metadataContent).addHeader("ETag", "\"v1\"").addHeader("Cache-Control", "no-cache").addHeader("X-Checksum-Sha1", sha1(metadataContent)));
+    server.enqueue(new MockResponse().setResponseCode(304));
+    server.start();
+
+    // another local repository, so the connector has no validators of its own
+    downloadMetadata(new File(TestFileUtils.createTempDir(), "maven-metadata-repo.xml"));
+    File metadataFile = new File(TestFileUtils.createTempDir(), "maven-metadata-repo.xml");
+    downloadMetadata(metadataFile);
+
+    assertEquals(metadataContent, Files.toString(metadataFile, Charsets.UTF_8));
+    assertNull(server.takeRequest().getHeader("If-None-Match"));
+    assertEquals("\"v1\"", server.takeRequest().getHeader("If-None-Match"));
+  }
+
+  public void testFreshMetadataIsServedFromTheCache() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.cacheDirectory", TestFileUtils.createTempDir().getAbsolutePath());
+    String metadataContent = "<metadata/>";
+    server.enqueue(new MockResponse().setBody(metadataContent).addHeader("Cache-Control", "max-age=600").addHeader("X-Checksum-Sha1", sha1(metadataContent)));
+    server.start();
+
+    downloadMetadata(new File(TestFileUtils.createTempDir(), "maven-metadata-repo.xml"));
+    File metadataFile = new File(TestFileUtils.createTempDir(), "maven-metadata-repo.xml");
+    downloadMetadata(metadataFile);
+
+    assertEquals(metadataContent, Files.toString(metadataFile, Charsets.UTF_8));
+    assertEquals(1, server.getRequestCount());
+  }
+
+  public void testArtifactsAreNotCached() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.cacheDirectory", TestFileUtils.createTempDir().getAbsolutePath());
+    server.enqueue(new MockResponse().setBody(ARTIFACT_CONTENT).addHeader("Cache-Control", "max-age=600").addHeader("X-Checksum-Sha1", sha1(ARTIFACT_CONTENT)));
+    server.enqueue(new MockResponse().setBody(ARTIFACT_CONTENT).addHeader("Cache-Control", "max-age=600").addHeader("X-Checksum-Sha1", sha1(ARTIFACT_CONTENT)));
+    server.start();
+
+    downloadArtifact();
+    downloadArtifact();
+
+    assertEquals(2, server.getRequestCount());
+  }
+
+  public void testThrottledDownloadIsRetriedAfterRetryAfter() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(429).addHeader("Retry-After", "1"));
+    enqueueServerWithSingleArtifactResponse();
+
+    long start = System.currentTimeMillis();
+    downloadArtifact();
+
+    assertTrue(System.currentTimeMillis() - start >= 1000);
+    assertEquals(server.takeRequest().getPath(), server.takeRequest().getPath());
+  }
+
+  public void testServerErrorIsRetriedWithBackoff() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.retryDelay", 10);
+    server.enqueue(new MockResponse().setResponseCode(502));
+    server.enqueue(new MockResponse().setResponseCode(500));
+    enqueueServerWithSingleArtifactResponse();
+
+    downloadArtifact();
+  }
+
+  public void testRetryAfterLongerThanWeWaitIsNotRetried() throws Exception {
+    server.enqueue(new MockResponse().setResponseCode(503).addHeader("Retry-After", "3600"));
+    enqueueServerWithSingleArtifactResponse();
+
+    assertNotNull(tryDownloadArtifact());
+    assertEquals(1, server.getRequestCount());
+  }
+
+  public void testRetriesAreLimitedByTheBudgetOfTheSession() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.retryDelay", 10);
+    session().setConfigProperty("aether.connector.okhttp.retryBudget", 1);
+    server.enqueue(new MockResponse().setResponseCode(500));
+    server.enqueue(new MockResponse().setResponseCode(500));
+    enqueueServerWithSingleArtifactResponse();
+
+    assertNotNull(tryDownloadArtifact());
+    assertEquals(2, server.getRequestCount());
+  }
+
+  public void testLateDownloadIsHedged() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.hedging", true);
+    session().setConfigProperty("aether.connector.okhttp.hedgeDelay", 200);
+    server.enqueue(new MockResponse().setBody(ARTIFACT_CONTENT).setHeadersDelay(2, TimeUnit.SECONDS));
+    enqueueServerWithSingleArtifactResponse();
+
+    long start = System.currentTimeMillis();
+    downloadArtifact();
+
+    assertTrue(System.currentTimeMillis() - start < 1500);
+    assertEquals(server.takeRequest().getPath(), server.takeRequest().getPath());
+  }
+
+  public void testTimelyDownloadIsNotHedged() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.hedging", true);
+    session().setConfigProperty("aether.connector.okhttp.hedgeDelay", 5000);
+    enqueueServerWithSingleArtifactResponse();
+
+    downloadArtifact();
+
+    assertEquals(2, server.getRequestCount());
+  }
+
+  public void testArtifactDownloadOverH2cWithPriorKnowledge() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.h2c", true);
+    session().setConfigProperty("aether.connector.okhttp.pingInterval", 1000);
+    server.setProtocols(Arrays.asList(Protocol.H2_PRIOR_KNOWLEDGE));
+    enqueueServerWithSingleArtifactResponse();
+
+    downloadArtifact();
+
+    // the artifact and its checksum are requested over the same connection
+    assertEquals(0, server.takeRequest().getSequenceNumber());
+    assertEquals(1, server.takeRequest().getSequenceNumber());
+  }
+
+  public void testConnectionIsWarmedUpWhenTheConnectorIsCreated() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.warmUpConnections", 1);
+    server.enqueue(new MockResponse());
+    enqueueServerWithSingleArtifactResponse();
+
+    connector();
+    RecordedRequest warmUp = server.takeRequest(5, TimeUnit.SECONDS);
+    assertNotNull(warmUp);
+    assertEquals("HEAD", warmUp.getMethod());
+    // until the connection of the warm-up is back in the pool
+    Thread.sleep(200);
+    downloadArtifact();
+
+    // the artifact is requested over the connection opened by the warm-up
+    assertEquals(1, server.takeRequest().getSequenceNumber());
+  }
+
+  public void testConnectionsAreSharedAcrossClients() throws Exception {
+    server.enqueue(new MockResponse().setBody("A"));
+    server.enqueue(new MockResponse().setBody("B"));
+    server.enqueue(new MockResponse().setBody("C"));
+    server.start();
+
+    // a pool of their own, that no client of the other tests uses
+    OkHttpAetherClient first = new OkHttpAetherClient(sharedPoolConfig());
+    OkHttpAetherClient second = new OkHttpAetherClient(sharedPoolConfig());
+    assertEquals("A", get(first, server.url("/a").toString()));
+    assertEquals("B", get(second, server.url("/b").toString()));
+    assertEquals(0, server.takeRequest().getSequenceNumber());
+    assertEquals(1, server.takeRequest().getSequenceNumber());
+
+    // closing them leaves the connection to the clients that come next
+    first.close();
+    second.close();
+    assertEquals("C", get(new OkHttpAetherClient(sharedPoolConfig()), server.url("/c").toString()));
+    assertEquals(2, server.takeRequest().getSequenceNumber());
+  }
+
+  public void testConnectionsAreKeptOpenWhenTheConnectorsAreClosed() throws Exception {
+    // a pool of their own, that no connector of the other tests uses
+    session().setConfigProperty("aether.connector.okhttp.keepAliveDuration", TimeUnit.MINUTES.toMillis(2));
+    server.enqueue(new MockResponse().setBody("A"));
+    server.enqueue(new MockResponse().setBody("B"));
+    server.enqueue(new MockResponse().setBody("C"));
+    server.start();
+
+    RepositoryConnector first = repositoryConnectorFactory.newInstance(session(), new RemoteRepository.Builder("repo", "default", url("repo")).build());
+    RepositoryConnector second = repositoryConnectorFactory.newInstance(session(), new RemoteRepository.Builder("mirror", "default", url("repo")).build());
+    assertEquals("A", getMetadata(first));
+    assertEquals("B", getMetadata(second));
+    assertEquals(0, server.takeRequest().getSequenceNumber());
+    assertEquals(1, server.takeRequest().getSequenceNumber());
+
+    // as Aether does after each batch of transfers, the next batch still finds the connection open
+    first.close();
+    second.close();
+    assertEquals("C", getMetadata(first));
+    assertEquals(2, server.takeRequest().getSequenceNumber());
+  }
+
+  private String getMetadata(RepositoryConnector connector) throws Exception {
+    File file = TestFileUtils.createTempFile("");
+    Metadata metadata = new DefaultMetadata("gid", "aid", "version", "maven-metadata.xml", Metadata.Nature.RELEASE_OR_SNAPSHOT);
+    MetadataDownload download = new MetadataDownload(metadata, null, file, RepositoryPolicy.CHECKSUM_POLICY_IGNORE);
+    connector.get(null, Arrays.asList(download));
+    assertNull(String.valueOf(download.getException()), download.getException());
+    return TestFileUtils.readString(file);
+  }
+
+  private AetherClientConfig sharedPoolConfig() {
+    AetherClientConfig config = new AetherClientConfig();
+    config.setUserAgent("Test");
+    config.setKeepAliveDuration(TimeUnit.MINUTES.toMillis(1));
+    return config;
+  }
+
+  private String get(OkHttpAetherClient client, String uri) throws IOException {
+    try (Response response = client.get(uri)) {
+      return readAscii(response.getInputStream(), Integer.MAX_VALUE);
+    }
+  }
+
+  private Exception tryDownloadArtifact() throws Exception {
+    ArtifactDownload download = new ArtifactDownload(artifact(ARTIFACT_CONTENT), null, TestFileUtils.createTempFile(""), RepositoryPolicy.CHECKSUM_POLICY_FAIL);
+    connector().get(Arrays.asList(download), null);
+    return download.getException();
+  }
+
+  private void downloadMetadata(File metadataFile) throws Exception {
+    Metadata metadata = new DefaultMetadata("gid", "aid", "version", "maven-metadata.xml", Metadata.Nature.RELEASE_OR_SNAPSHOT);
+    MetadataDownload download = new MetadataDownload(metadata, null, metadataFile, RepositoryPolicy.CHECKSUM_POLICY_FAIL);
+    connector().get(null, Arrays.asList(download));
+    assertNull(String.valueOf(download.getException()), download.getException());
+  }
+
   //
   // Testing only with authentication really doesn't make sense in the absence of SSL because
   // sending your credentials in the clear is a bad idea.
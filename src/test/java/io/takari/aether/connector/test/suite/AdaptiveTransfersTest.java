@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector.test.suite;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMX;
+import javax.management.ObjectName;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.internal.test.util.TestFileUtils;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.spi.connector.ArtifactDownload;
+import org.eclipse.aether.spi.connector.RepositoryConnector;
+
+import io.takari.aether.connector.TransferSchedulerMXBean;
+import io.takari.aether.connector.test.suite.server.Behaviour;
+import io.tesla.webserver.WebServer;
+
+public class AdaptiveTransfersTest extends AetherTestCase {
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+
+  private final AtomicInteger throttledRequests = new AtomicInteger();
+
+  private volatile boolean throttle;
+
+  @Override
+  protected void configureServer(WebServer server) {
+    Behaviour behaviour = new Behaviour() {
+      @Override
+      public boolean execute(HttpServletRequest request, HttpServletResponse response, Map<Object, Object> ctx) throws Exception {
+        int n = inFlight.incrementAndGet();
+        int max;
+        while (n > (max = maxInFlight.get()) && !maxInFlight.compareAndSet(max, n)) {
+        }
+        try {
+          Thread.sleep(50);
+        } finally {
+          inFlight.decrementAndGet();
+        }
+        if (throttle) {
+          response.sendError(429, "Too Many Requests");
+          return false;
+        }
+        return true;
+      }
+    };
+    addBehaviour("/repo/*", behaviour, generate, expect, provide);
+    addBehaviour("/throttled/*", new Behaviour() {
+      @Override
+      public boolean execute(HttpServletRequest request, HttpServletResponse response, Map<Object, Object> ctx) throws Exception {
+        throttledRequests.incrementAndGet();
+        response.sendError(503, "Service Unavailable");
+        return false;
+      }
+    });
+  }
+
+  @Override
+  protected void configureTest() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.adaptiveTransfers", true);
+    session().setConfigProperty("aether.connector.basic.threads", 16);
+  }
+
+  public void testLimitGrowsWhileTheHostAnswersInTime() throws Exception {
+    Integer before = getLimit();
+    List<ArtifactDownload> downloads = downloads("a", 32);
+
+    connector().get(downloads, null);
+
+    for (ArtifactDownload download : downloads) {
+      assertNull(String.valueOf(download.getException()), download.getException());
+    }
+    assertTrue("limit " + getLimit() + " was " + before, getLimit() > (before != null ? before : 4));
+  }
+
+  public void testLimitHalvesWhenTheHostThrottles() throws Exception {
+    throttle = true;
+    List<ArtifactDownload> downloads = downloads("b", 8);
+
+    connector().get(downloads, null);
+
+    for (ArtifactDownload download : downloads) {
+      assertNotNull(download.getException());
+    }
+    assertEquals(Integer.valueOf(1), getLimit());
+  }
+
+  public void testConnectorsThatDoNotAdaptKeepWhatWasLearned() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.retryDelay", 10);
+    throttle = true;
+    connector().get(downloads("c", 4), null);
+    assertEquals(Integer.valueOf(1), getLimit());
+
+    throttle = false;
+    session().setConfigProperty("aether.connector.okhttp.adaptiveTransfers", false);
+    RepositoryConnector mirror = repositoryConnectorFactory.newInstance(session(), new RemoteRepository.Builder("mirror", "default", url("repo")).build());
+    try {
+      List<ArtifactDownload> downloads = downloads("d", 4);
+      mirror.get(downloads, null);
+      for (ArtifactDownload download : downloads) {
+        assertNull(String.valueOf(download.getException()), download.getException());
+      }
+    } finally {
+      mirror.close();
+    }
+    assertEquals(Integer.valueOf(1), getLimit());
+  }
+
+  public void testThrottlingOriginDoesNotHoldBackTheRepositoryHost() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.retryDelay", 10);
+    String mirror = "http://127.0.0.1:" + port() + "/throttled";
+    session().setConfigProperty("aether.connector.okhttp.origins.async-test-repo", mirror);
+    Integer before = getLimit();
+    List<ArtifactDownload> downloads = downloads("e", 8);
+
+    connector().get(downloads, null);
+
+    for (ArtifactDownload download : downloads) {
+      assertNull(String.valueOf(download.getException()), download.getException());
+    }
+    assertTrue(throttledRequests.get() > 0);
+    assertTrue("mirror limit " + getLimit(mirror), getLimit(mirror) != null && getLimit(mirror) < 4);
+    assertTrue("limit " + getLimit() + " was " + before, getLimit() >= (before != null ? before : 4));
+  }
+
+  private Integer getLimit() throws Exception {
+    return getLimit(url("repo"));
+  }
+
+  private Integer getLimit(String url) throws Exception {
+    TransferSchedulerMXBean scheduler = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(), new ObjectName("io.takari.aether.connector:type=TransferScheduler"), TransferSchedulerMXBean.class);
+    return scheduler.getTransferLimits().get(new URL(url).getHost());
+  }
+
+  private List<ArtifactDownload> downloads(String artifactId, int count) throws Exception {
+    List<ArtifactDownload> downloads = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      addDelivery("gid/" + artifactId + "/" + i + "/" + artifactId + "-" + i + ".pom", artifactId + " " + i);
+      File file = new File(TestFileUtils.createTempDir(), artifactId + "-" + i + ".pom");
+      downloads.add(new ArtifactDownload(new DefaultArtifact("gid", artifactId, "", "pom", String.valueOf(i)), null, file, RepositoryPolicy.CHECKSUM_POLICY_IGNORE));
+    }
+    return downloads;
+  }
+}
@@ -169,6 +169,14 @@ public abstract class AetherBaseTestCase extends InjectedTestCase {
     return digest(string, algo);
   }
 
+  protected String sha256(String string) throws NoSuchAlgorithmException, UnsupportedEncodingException {
+    return digest(string, "SHA-256");
+  }
+
+  protected String sha512(String string) throws NoSuchAlgorithmException, UnsupportedEncodingException {
+    return digest(string, "SHA-512");
+  }
+
   private String digest(String string, String algo) throws NoSuchAlgorithmException, UnsupportedEncodingException {
     MessageDigest digest = MessageDigest.getInstance(algo);
     byte[] bytes = digest.digest(string.getBytes("UTF-8"));
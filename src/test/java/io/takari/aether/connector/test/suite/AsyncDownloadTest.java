@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector.test.suite;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.internal.test.util.TestFileUtils;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.spi.connector.ArtifactDownload;
+
+import io.takari.aether.connector.test.suite.server.Behaviour;
+import io.tesla.webserver.WebServer;
+
+public class AsyncDownloadTest extends AetherTestCase {
+
+  private static final int DOWNLOADS = 20;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+
+  @Override
+  protected void configureServer(WebServer server) {
+    // keeps each request around long enough for the requests to overlap
+    Behaviour concurrency = new Behaviour() {
+      @Override
+      public boolean execute(HttpServletRequest request, HttpServletResponse response, Map<Object, Object> ctx) throws Exception {
+        int n = inFlight.incrementAndGet();
+        int max;
+        while (n > (max = maxInFlight.get()) && !maxInFlight.compareAndSet(max, n)) {
+        }
+        try {
+          Thread.sleep(100);
+        } finally {
+          inFlight.decrementAndGet();
+        }
+        return true;
+      }
+    };
+    addBehaviour("/repo/*", concurrency, generate, expect, provide);
+  }
+
+  @Override
+  protected void configureTest() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.async", true);
+    session().setConfigProperty("aether.connector.okhttp.maxRequestsPerHost", 4);
+    // the downloads are not limited by the threads of the connector
+    session().setConfigProperty("aether.connector.basic.threads", 1);
+  }
+
+  public void testDownloadsRunOnTheClientWithinItsLimits() throws Exception {
+    List<ArtifactDownload> downloads = new ArrayList<>();
+    for (int i = 0; i < DOWNLOADS; i++) {
+      addDelivery("gid/aid/" + i + "/aid-" + i + ".pom", "pom " + i);
+      File file = new File(TestFileUtils.createTempDir(), "aid-" + i + ".pom");
+      downloads.add(new ArtifactDownload(new DefaultArtifact("gid", "aid", "", "pom", String.valueOf(i)), null, file, RepositoryPolicy.CHECKSUM_POLICY_IGNORE));
+    }
+
+    connector().get(downloads, null);
+
+    for (int i = 0; i < DOWNLOADS; i++) {
+      ArtifactDownload download = downloads.get(i);
+      assertNull(String.valueOf(download.getException()), download.getException());
+      GetTest.assertContent("pom " + i, download.getFile());
+    }
+    assertTrue("max in flight " + maxInFlight.get(), maxInFlight.get() > 1);
+    assertTrue("max in flight " + maxInFlight.get(), maxInFlight.get() <= 4);
+  }
+
+  public void testChecksumsAreVerified() throws Exception {
+    addDelivery("gid/aid/version/aid-version-classifier.extension", "artifact");
+    addDelivery("gid/aid/version/aid-version-classifier.extension.sha1", "foo");
+    ArtifactDownload download = new ArtifactDownload(artifact(), null, TestFileUtils.createTempFile(""), RepositoryPolicy.CHECKSUM_POLICY_FAIL);
+
+    connector().get(Arrays.asList(download), null);
+
+    assertNotNull(download.getException());
+  }
+
+  public void testHedgingDoesNotStallTheClient() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.hedging", true);
+    session().setConfigProperty("aether.connector.okhttp.hedgeDelay", 10);
+    session().setConfigProperty("aether.connector.okhttp.maxRequestsPerHost", 1);
+    final List<ArtifactDownload> downloads = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      addDelivery("gid/aid/" + i + "/aid-" + i + ".pom", "pom " + i);
+      addDelivery("gid/aid/" + i + "/aid-" + i + ".pom.sha1", sha1("pom " + i));
+      File file = new File(TestFileUtils.createTempDir(), "aid-" + i + ".pom");
+      downloads.add(new ArtifactDownload(new DefaultArtifact("gid", "aid", "", "pom", String.valueOf(i)), null, file, RepositoryPolicy.CHECKSUM_POLICY_FAIL));
+    }
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          connector().get(downloads, null);
+          return null;
+        }
+      }).get(30, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    for (int i = 0; i < downloads.size(); i++) {
+      ArtifactDownload download = downloads.get(i);
+      assertNull(String.valueOf(download.getException()), download.getException());
+      GetTest.assertContent("pom " + i, download.getFile());
+    }
+  }
+}
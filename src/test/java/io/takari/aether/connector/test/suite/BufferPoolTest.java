@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector.test.suite;
+
+import java.nio.ByteBuffer;
+
+import io.takari.aether.client.BufferPool;
+import junit.framework.TestCase;
+
+public class BufferPoolTest extends TestCase {
+
+  public void testBuffersAreReused() {
+    BufferPool pool = new BufferPool(1024, 4096);
+    ByteBuffer buffer = pool.acquire();
+    assertEquals(1024, buffer.capacity());
+    buffer.put((byte) 1);
+    pool.release(buffer);
+    assertEquals(1024, pool.getPooledBytes());
+
+    ByteBuffer reused = pool.acquire();
+    assertSame(buffer, reused);
+    assertEquals(0, reused.position());
+    assertEquals(1024, reused.limit());
+    assertEquals(0, pool.getPooledBytes());
+  }
+
+  public void testDirectBuffersAreReused() {
+    BufferPool pool = new BufferPool(1024, 4096, true);
+    ByteBuffer buffer = pool.acquire();
+    assertTrue(buffer.isDirect());
+    pool.release(buffer);
+    assertSame(buffer, pool.acquire());
+
+    // heap buffers are not taken in
+    pool.release(ByteBuffer.allocate(1024));
+    assertEquals(0, pool.getPooledBytes());
+  }
+
+  public void testPooledMemoryIsBounded() {
+    BufferPool pool = new BufferPool(1024, 2048);
+    ByteBuffer[] buffers = {pool.acquire(), pool.acquire(), pool.acquire()};
+    for (ByteBuffer buffer : buffers) {
+      pool.release(buffer);
+    }
+    assertEquals(2048, pool.getPooledBytes());
+
+    // foreign buffers are not taken in
+    pool = new BufferPool(1024, 2048);
+    pool.release(ByteBuffer.allocate(512));
+    pool.release(ByteBuffer.allocateDirect(1024));
+    assertEquals(0, pool.getPooledBytes());
+  }
+}
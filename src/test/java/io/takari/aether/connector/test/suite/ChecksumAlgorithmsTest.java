@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector.test.suite;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.internal.test.util.TestFileUtils;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.spi.connector.ArtifactDownload;
+import org.eclipse.aether.spi.connector.ArtifactUpload;
+import org.eclipse.aether.transfer.ArtifactTransferException;
+
+public class ChecksumAlgorithmsTest extends AetherTestCase {
+
+  @Override
+  protected void configureTest() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.checksums", "SHA-512, SHA-256");
+  }
+
+  public void testUploadsOnlyTheConfiguredChecksums() throws Exception {
+    addExpectation("gid/aid/version/aid-version-classifier.extension", "artifact");
+    addExpectation("gid/aid/version/aid-version-classifier.extension.sha512", sha512("artifact"));
+    addExpectation("gid/aid/version/aid-version-classifier.extension.sha256", sha256("artifact"));
+
+    Artifact artifact = artifact("artifact");
+    ArtifactUpload up = new ArtifactUpload(artifact, artifact.getFile());
+    connector().put(Arrays.asList(up), null);
+
+    ArtifactTransferException ex = up.getException();
+    assertNull(ex != null ? ex.getMessage() : "", ex);
+    assertExpectations();
+    assertNull(expect.seenBytes("gid/aid/version/aid-version-classifier.extension.sha1"));
+    assertNull(expect.seenBytes("gid/aid/version/aid-version-classifier.extension.md5"));
+  }
+
+  public void testDownloadIsVerifiedWithTheConfiguredChecksum() throws Exception {
+    String content = "artifact";
+    addDelivery("gid/aid/version/aid-version-classifier.extension", content);
+    addDelivery("gid/aid/version/aid-version-classifier.extension.sha512", sha512(content));
+    addDelivery("gid/aid/version/aid-version-classifier.extension.sha1", "not verified");
+
+    File f = TestFileUtils.createTempFile("");
+    ArtifactDownload down = new ArtifactDownload(artifact(), null, f, RepositoryPolicy.CHECKSUM_POLICY_FAIL);
+    connector().get(Arrays.asList(down), null);
+
+    assertNull(String.valueOf(down.getException()), down.getException());
+    GetTest.assertContent(content, f);
+    assertTrue(new File(f.getParentFile(), f.getName() + ".sha512").isFile());
+  }
+
+  public void testDownloadFailsOnMismatchingChecksum() throws Exception {
+    String content = "artifact";
+    addDelivery("gid/aid/version/aid-version-classifier.extension", content);
+    addDelivery("gid/aid/version/aid-version-classifier.extension.sha512", sha512("something else"));
+    addDelivery("gid/aid/version/aid-version-classifier.extension.sha1", sha1(content));
+
+    File f = TestFileUtils.createTempFile("");
+    ArtifactDownload down = new ArtifactDownload(artifact(), null, f, RepositoryPolicy.CHECKSUM_POLICY_FAIL);
+    connector().get(Arrays.asList(down), null);
+
+    assertNotNull(down.getException());
+  }
+
+  public void testDownloadIsVerifiedWithTheDefaultChecksumsWhenNoneIsConfigured() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.checksums", " , ");
+    String content = "artifact";
+    addDelivery("gid/aid/version/aid-version-classifier.extension", content);
+    addDelivery("gid/aid/version/aid-version-classifier.extension.sha1", sha1("something else"));
+
+    File f = TestFileUtils.createTempFile("");
+    ArtifactDownload down = new ArtifactDownload(artifact(), null, f, RepositoryPolicy.CHECKSUM_POLICY_FAIL);
+    connector().get(Arrays.asList(down), null);
+
+    assertNotNull(down.getException());
+  }
+
+  public void testDownloadIsVerifiedWithTheFirstSupportedChecksum() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.checksums", "NO-SUCH-DIGEST, SHA-1");
+    String content = "artifact";
+    addDelivery("gid/aid/version/aid-version-classifier.extension", content);
+    addDelivery("gid/aid/version/aid-version-classifier.extension.nosuchdigest", "not verified");
+    addDelivery("gid/aid/version/aid-version-classifier.extension.sha1", sha1(content));
+
+    File f = TestFileUtils.createTempFile("");
+    ArtifactDownload down = new ArtifactDownload(artifact(), null, f, RepositoryPolicy.CHECKSUM_POLICY_FAIL);
+    connector().get(Arrays.asList(down), null);
+
+    assertNull(String.valueOf(down.getException()), down.getException());
+    GetTest.assertContent(content, f);
+    assertTrue(new File(f.getParentFile(), f.getName() + ".sha1").isFile());
+  }
+}
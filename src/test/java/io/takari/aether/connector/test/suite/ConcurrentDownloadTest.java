@@ -26,11 +26,21 @@ import org.eclipse.aether.util.ChecksumUtils;
 
 import com.google.inject.Binder;
 
+import io.takari.aether.connector.test.suite.server.Record;
+import io.tesla.webserver.WebServer;
+
 public class ConcurrentDownloadTest extends AetherTestCase {
   private static final int NUMBER_OF_TRIES_TO_CAUSE_CORRUPTION = 10;
   private static final int NUMBER_OF_THREADS = 2;
   private static final File TMP = new File(System.getProperty("java.io.tmpdir"), "aether-" + UUID.randomUUID().toString().substring(0, 8));
 
+  private final Record record = new Record();
+
+  @Override
+  protected void configureServer(WebServer server) {
+    addBehaviour("/repo/*", record, generate, expect, provide);
+  }
+
   @Override
   public void configure(Binder binder) {
     binder.bind(FileProcessor.class).to(DefaultFileProcessor.class);
@@ -63,6 +73,38 @@ public class ConcurrentDownloadTest extends AetherTestCase {
     }
   }
 
+  public void testConcurrentDownloadsOfSameFileShareOneFetch() throws Exception {
+    String testInput = createTestInput();
+    addDelivery("gid/aid/version/aid-version-classifier.extension", testInput.getBytes());
+    addDelivery("gid/aid/version/aid-version-classifier.extension.sha1", sha1(testInput).getBytes());
+    // slow enough for the downloads to overlap
+    provide.setLatency(1);
+
+    clearRepo();
+    File file = new File(TMP, "foo-bar-1.0.pom");
+    List<ArtifactDownload> downs = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+    final RepositoryConnector connector = connector();
+    for (int i = 0; i < 4; ++i) {
+      final ArtifactDownload down = new ArtifactDownload(artifact(), null, file, RepositoryPolicy.CHECKSUM_POLICY_FAIL);
+      downs.add(down);
+      threads.add(new Thread(new Runnable() {
+        @Override
+        public void run() {
+          download(connector, Arrays.asList(down));
+        }
+      }));
+    }
+    startThreads(threads);
+    waitForThreadsToFinish(threads);
+
+    for (ArtifactDownload down : downs) {
+      assertNull(String.valueOf(down.getException()), down.getException());
+    }
+    assertEquals(sha1(testInput), ChecksumUtils.calc(file, Collections.singleton("SHA-1")).get("SHA-1"));
+    assertEquals(record.getRequests().toString(), 1, Collections.frequency(record.getRequests(), "GET /repo/gid/aid/version/aid-version-classifier.extension"));
+  }
+
   private String createTestInput() {
     // Create a test input close to the size of a real artifact, so that it is several times
     // larger than the chunk size of the server to increase the chance of corruption.
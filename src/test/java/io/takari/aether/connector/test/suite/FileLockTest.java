@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector.test.suite;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.aether.internal.test.util.TestFileUtils;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.spi.connector.ArtifactDownload;
+
+import io.takari.aether.connector.test.suite.server.Record;
+import io.tesla.webserver.WebServer;
+
+public class FileLockTest extends AetherTestCase {
+
+  private static final String PATH = "gid/aid/version/aid-version-classifier.extension";
+
+  private final Record record = new Record();
+
+  @Override
+  protected void configureServer(WebServer server) {
+    addBehaviour("/repo/*", record, generate, expect, provide);
+  }
+
+  @Override
+  protected void configureTest() throws Exception {
+    addDelivery(PATH, "remote");
+    session().setConfigProperty("aether.connector.okhttp.fileLocks", true);
+  }
+
+  public void testDownloadOfLockingProcessIsReused() throws Exception {
+    final File file = new File(TestFileUtils.createTempDir(), "aid.extension");
+    // a lock held by this JVM looks the same as one held by another process
+    final FileChannel channel = FileChannel.open(new File(file.getParentFile(), file.getName() + ".lock").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    final FileLock lock = channel.lock();
+    Thread other = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(500);
+          Files.write(file.toPath(), "local".getBytes(StandardCharsets.UTF_8));
+          lock.release();
+          channel.close();
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+    other.start();
+    try {
+      download(file);
+    } finally {
+      other.join();
+    }
+
+    GetTest.assertContent("local", file);
+    assertFalse(record.getRequests().toString(), record.getRequests().contains("GET /repo/" + PATH));
+  }
+
+  public void testStaleLockIsIgnored() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.fileLockStaleTime", 1000);
+    File file = new File(TestFileUtils.createTempDir(), "aid.extension");
+    File lockFile = new File(file.getParentFile(), file.getName() + ".lock");
+    try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE); FileLock lock = channel.lock()) {
+      lockFile.setLastModified(System.currentTimeMillis() - 60 * 1000);
+      download(file);
+    }
+
+    GetTest.assertContent("remote", file);
+    assertEquals(record.getRequests().toString(), 1, Collections.frequency(record.getRequests(), "GET /repo/" + PATH));
+  }
+
+  public void testLockIsReleasedAfterDownload() throws Exception {
+    File file = new File(TestFileUtils.createTempDir(), "aid.extension");
+    download(file);
+
+    GetTest.assertContent("remote", file);
+    try (FileChannel channel = FileChannel.open(new File(file.getParentFile(), file.getName() + ".lock").toPath(), StandardOpenOption.WRITE); FileLock lock = channel.tryLock()) {
+      assertNotNull(lock);
+    }
+  }
+
+  private void download(File file) throws Exception {
+    ArtifactDownload down = new ArtifactDownload(artifact(), null, file, RepositoryPolicy.CHECKSUM_POLICY_IGNORE);
+    connector().get(Arrays.asList(down), null);
+    assertNull(String.valueOf(down.getException()), down.getException());
+  }
+}
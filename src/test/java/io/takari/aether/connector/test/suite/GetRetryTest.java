@@ -22,7 +22,6 @@ import org.eclipse.aether.repository.RepositoryPolicy;
 import org.eclipse.aether.spi.connector.ArtifactDownload;
 import org.eclipse.aether.spi.connector.RepositoryConnector;
 import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
-import org.eclipse.aether.transfer.ArtifactTransferException;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.nio.SelectChannelConnector;
@@ -75,14 +74,14 @@ public class GetRetryTest extends InjectedTestCase {
     }
   }
 
-  public void testDownloadWhenServerCannotSatisfyDownloadWithoutRangesWillResultInException() throws Exception {
+  public void testResumeDownloadsWhereTheServerDropsTheConnectionAndSupportsRanges() throws Exception {
     
     artifact = new DefaultArtifact("gid", "aid", "classifier", "extension", "version");
 
     server = new Server();    
     connector = new SelectChannelConnector();
     server.addConnector(connector);
-    flakyHandler = new FlakyHandler(4, true); // support ranges
+    flakyHandler = new FlakyHandler(4, true); // support ranges, each request only delivers a third of the content
     server.setHandler(flakyHandler);
     server.start();        
     
@@ -99,9 +98,12 @@ public class GetRetryTest extends InjectedTestCase {
       connector.close();
     }
 
-    assertEquals("No exception resulted from downloading from bad server", download.getException().getClass(), ArtifactTransferException.class);
+    assertNull(String.valueOf(download.getException()), download.getException());
+    assertTrue("Missing " + file.getAbsolutePath(), file.isFile());
+    assertEquals("Bad size of " + file.getAbsolutePath(), flakyHandler.totalSize, file.length());
+    assertContentPattern(file);
   }
- 
+
   public void testRetryDownloadsWhereTheServerDropsTheConnectionAndDoesNotSupportsRanges() throws Exception {
     
     artifact = new DefaultArtifact("gid", "aid", "classifier", "extension", "version");
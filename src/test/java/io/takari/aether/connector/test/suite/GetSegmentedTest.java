@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector.test.suite;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.internal.test.util.TestFileUtils;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.spi.connector.ArtifactDownload;
+import org.eclipse.aether.transfer.TransferEvent;
+
+public class GetSegmentedTest extends AetherTestCase {
+
+  @Override
+  protected void configureTest() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.segments", 4);
+    session().setConfigProperty("aether.connector.okhttp.segmentThreshold", 1024);
+  }
+
+  public void testSegmentedDownload() throws Exception {
+    String content = content(10 * 1024 + 3);
+    addDelivery("gid/aid/version/aid-version-classifier.extension", content);
+    addDelivery("gid/aid/version/aid-version-classifier.extension.sha1", sha1(content));
+
+    File f = TestFileUtils.createTempFile("");
+    Artifact a = artifact();
+
+    RecordingTransferListener listener = new RecordingTransferListener();
+    ArtifactDownload down = new ArtifactDownload(a, null, f, RepositoryPolicy.CHECKSUM_POLICY_FAIL);
+    down.setListener(listener);
+    connector().get(Arrays.asList(down), null);
+
+    assertNull(String.valueOf(down.getException()), down.getException());
+    GetTest.assertContent(content, f);
+
+    // the listener still sees all the content, in order
+    StringBuilder progressed = new StringBuilder();
+    for (TransferEvent event : listener.getProgressEvents()) {
+      ByteBuffer buffer = event.getDataBuffer();
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      progressed.append(new String(bytes, "UTF-8"));
+    }
+    assertEquals(content, progressed.toString());
+  }
+
+  public void testBelowThresholdDownload() throws Exception {
+    String content = content(1000);
+    addDelivery("gid/aid/version/aid-version-classifier.extension", content);
+    addDelivery("gid/aid/version/aid-version-classifier.extension.sha1", sha1(content));
+
+    File f = TestFileUtils.createTempFile("");
+    Artifact a = artifact();
+
+    ArtifactDownload down = new ArtifactDownload(a, null, f, RepositoryPolicy.CHECKSUM_POLICY_FAIL);
+    connector().get(Arrays.asList(down), null);
+
+    assertNull(String.valueOf(down.getException()), down.getException());
+    GetTest.assertContent(content, f);
+  }
+
+  public void testServerWithoutRangeSupportFallsBackToSingleStream() throws Exception {
+    long bytes = 64 * 1024;
+    generate.addContent("gid/aid/version/aid-version-classifier.extension", bytes);
+
+    File f = TestFileUtils.createTempFile("");
+    Artifact a = artifact();
+
+    ArtifactDownload down = new ArtifactDownload(a, null, f, RepositoryPolicy.CHECKSUM_POLICY_IGNORE);
+    connector().get(Arrays.asList(down), null);
+
+    assertNull(String.valueOf(down.getException()), down.getException());
+    assertEquals(bytes, f.length());
+  }
+
+  private static String content(int length) {
+    StringBuilder content = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      content.append((char) ('a' + i % 26));
+    }
+    return content.toString();
+  }
+}
@@ -21,6 +21,8 @@ import org.eclipse.aether.transfer.TransferEvent;
 import org.junit.Assert;
 import org.junit.Test;
 
+import io.takari.aether.client.BufferPool;
+
 public class GetTest extends AetherTestCase {
 
   @Test
@@ -47,6 +49,29 @@ public class GetTest extends AetherTestCase {
   }
 
   @Test
+  public void testDownloadsUseThePooledBuffers() throws Exception {
+    addDelivery("gid/aid/version/aid-version-classifier.extension", "artifact");
+    addDelivery("gid/aid/version/aid-version-classifier.extension.sha1", sha1("artifact"));
+    BufferPool pool = BufferPool.getDirect();
+    long acquired = pool.getAcquiredBuffers();
+    long released = pool.getReleasedBuffers();
+
+    File f = TestFileUtils.createTempFile("");
+    download(f);
+
+    assertContent("artifact", f);
+    // every buffer taken is given back
+    acquired = pool.getAcquiredBuffers() - acquired;
+    assertTrue("buffers acquired " + acquired, acquired > 0);
+    assertEquals("buffers released", acquired, pool.getReleasedBuffers() - released);
+  }
+
+  private void download(File f) throws Exception {
+    ArtifactDownload down = new ArtifactDownload(artifact("bla"), null, f, RepositoryPolicy.CHECKSUM_POLICY_FAIL);
+    connector().get(Arrays.asList(down), null);
+    assertNull(String.valueOf(down.getException()), down.getException());
+  }
+
   public void testDownloadArtifactChecksumFailure() throws Exception {
 
     addDelivery("gid/aid/version/aid-version-classifier.extension", "artifact");
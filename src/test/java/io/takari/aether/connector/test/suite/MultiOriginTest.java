@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector.test.suite;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.internal.test.util.TestFileUtils;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.spi.connector.ArtifactDownload;
+
+import io.takari.aether.connector.test.suite.server.ErrorBehaviour;
+import io.takari.aether.connector.test.suite.server.Pause;
+import io.takari.aether.connector.test.suite.server.Record;
+import io.tesla.webserver.WebServer;
+
+public class MultiOriginTest extends AetherTestCase {
+
+  private static final int DOWNLOADS = 20;
+
+  private final Record repo = new Record();
+
+  private final Record dead = new Record();
+
+  private final Record slow = new Record();
+
+  @Override
+  protected void configureServer(WebServer server) {
+    addBehaviour("/repo/*", repo, generate, expect, provide);
+    addBehaviour("/dead/*", dead, new ErrorBehaviour(500, "Internal Server Error"));
+    addBehaviour("/slow/*", slow, new Pause(300), generate, expect, provide);
+  }
+
+  @Override
+  protected void configureTest() throws Exception {
+    session().setConfigProperty("aether.connector.basic.threads", 1);
+    session().setConfigProperty("aether.connector.okhttp.serverErrorRetries", 0);
+  }
+
+  public void testDeadOriginIsFailedOver() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.origins.async-test-repo", url("dead"));
+    List<ArtifactDownload> downloads = downloads();
+
+    connector().get(downloads, null);
+
+    assertSucceeded(downloads);
+    assertEquals(DOWNLOADS, repo.getRequests().size());
+    // left alone once it failed a few times in a row
+    assertTrue(dead.getRequests().toString(), dead.getRequests().size() <= 3);
+  }
+
+  public void testFastOriginGetsMostRequests() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.origins.async-test-repo", url("slow"));
+    List<ArtifactDownload> downloads = downloads();
+
+    connector().get(downloads, null);
+
+    assertSucceeded(downloads);
+    assertTrue(slow.getRequests().toString(), slow.getRequests().size() <= 5);
+    assertEquals(DOWNLOADS, repo.getRequests().size() + slow.getRequests().size());
+  }
+
+  private List<ArtifactDownload> downloads() throws Exception {
+    List<ArtifactDownload> downloads = new ArrayList<>();
+    for (int i = 0; i < DOWNLOADS; i++) {
+      addDelivery("gid/aid/" + i + "/aid-" + i + ".pom", "pom " + i);
+      File file = new File(TestFileUtils.createTempDir(), "aid-" + i + ".pom");
+      downloads.add(new ArtifactDownload(new DefaultArtifact("gid", "aid", "", "pom", String.valueOf(i)), null, file, RepositoryPolicy.CHECKSUM_POLICY_IGNORE));
+    }
+    return downloads;
+  }
+
+  private static void assertSucceeded(List<ArtifactDownload> downloads) {
+    for (ArtifactDownload download : downloads) {
+      assertNull(String.valueOf(download.getException()), download.getException());
+    }
+  }
+}
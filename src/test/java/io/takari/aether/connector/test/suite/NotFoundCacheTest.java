@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector.test.suite;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.internal.test.util.TestFileUtils;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.spi.connector.ArtifactDownload;
+import org.eclipse.aether.spi.connector.ArtifactUpload;
+import org.eclipse.aether.transfer.ArtifactNotFoundException;
+
+import io.takari.aether.connector.test.suite.server.ErrorBehaviour;
+import io.takari.aether.connector.test.suite.server.Record;
+import io.tesla.webserver.WebServer;
+
+public class NotFoundCacheTest extends AetherTestCase {
+
+  private final Record record = new Record();
+
+  @Override
+  protected void configureServer(WebServer server) {
+    addBehaviour("/repo/missing/*", record, new ErrorBehaviour(404, "Not Found"));
+    addBehaviour("/repo/*", record, generate, expect, provide);
+  }
+
+  @Override
+  protected void configureTest() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.notFoundCache", true);
+  }
+
+  public void testMissingArtifactIsRequestedOnce() throws Exception {
+    Artifact missing = new DefaultArtifact("missing:aid:1.0");
+    assertNotFound(missing);
+    assertNotFound(missing);
+
+    assertEquals(record.getRequests().toString(), 1, Collections.frequency(record.getRequests(), "GET /repo/missing/aid/1.0/aid-1.0.jar"));
+  }
+
+  public void testMissingSnapshotsExpireSooner() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.notFoundSnapshotTtl", 1);
+    Artifact missing = new DefaultArtifact("missing:aid:1.0-SNAPSHOT");
+    assertNotFound(missing);
+    Thread.sleep(10);
+    assertNotFound(missing);
+
+    assertEquals(record.getRequests().toString(), 2, Collections.frequency(record.getRequests(), "GET /repo/missing/aid/1.0-SNAPSHOT/aid-1.0-SNAPSHOT.jar"));
+  }
+
+  public void testDeploymentInvalidatesMissingArtifacts() throws Exception {
+    Artifact missing = new DefaultArtifact("missing:aid:1.0");
+    assertNotFound(missing);
+    Artifact deployed = artifact("artifact");
+    connector().put(Arrays.asList(new ArtifactUpload(deployed, deployed.getFile())), null);
+    assertNotFound(missing);
+
+    assertEquals(record.getRequests().toString(), 2, Collections.frequency(record.getRequests(), "GET /repo/missing/aid/1.0/aid-1.0.jar"));
+  }
+
+  public void testMissingArtifactsAreSaved() throws Exception {
+    assertNotFound(new DefaultArtifact("missing:aid:1.0"));
+    connector().close();
+
+    File[] saved = new File(session().getLocalRepository().getBasedir(), ".cache/okhttp").listFiles();
+    assertNotNull(saved);
+    assertEquals(1, saved.length);
+    assertTrue(saved[0].getName(), saved[0].getName().startsWith("async-test-repo-") && saved[0].getName().endsWith(".notfound"));
+  }
+
+  public void testMissingArtifactIsNotCachedWithSeveralOrigins() throws Exception {
+    // another origin that may have the artifact already
+    session().setConfigProperty("aether.connector.okhttp.origins.async-test-repo", url("repo"));
+    Artifact missing = new DefaultArtifact("missing:aid:1.0");
+    assertNotFound(missing);
+    assertNotFound(missing);
+
+    assertEquals(record.getRequests().toString(), 2, Collections.frequency(record.getRequests(), "GET /repo/missing/aid/1.0/aid-1.0.jar"));
+  }
+
+  public void testUnchangedFiltersAreNotSavedAgain() throws Exception {
+    assertNotFound(new DefaultArtifact("missing:aid:1.0"));
+    connector().close();
+    File saved = new File(session().getLocalRepository().getBasedir(), ".cache/okhttp").listFiles()[0];
+    assertTrue(saved.setLastModified(0));
+
+    assertNotFound(new DefaultArtifact("missing:aid:1.0"));
+    connector().close();
+    assertEquals(0, saved.lastModified());
+
+    assertNotFound(new DefaultArtifact("missing:aid:2.0"));
+    connector().close();
+    assertTrue(saved.lastModified() > 0);
+  }
+
+  private void assertNotFound(Artifact artifact) throws Exception {
+    ArtifactDownload down = new ArtifactDownload(artifact, null, TestFileUtils.createTempFile(""), RepositoryPolicy.CHECKSUM_POLICY_IGNORE);
+    connector().get(Arrays.asList(down), null);
+    assertTrue(String.valueOf(down.getException()), down.getException() instanceof ArtifactNotFoundException);
+  }
+}
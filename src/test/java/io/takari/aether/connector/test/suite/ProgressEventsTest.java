@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector.test.suite;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.aether.DefaultSessionData;
+import org.eclipse.aether.internal.test.util.TestFileUtils;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.spi.connector.ArtifactDownload;
+import org.eclipse.aether.transfer.AbstractTransferListener;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.eclipse.aether.transfer.TransferListener;
+
+public class ProgressEventsTest extends AetherTestCase {
+
+  private static final String PATH = "gid/aid/version/aid-version-classifier.extension";
+
+  private static final int SIZE = 256 * 1024;
+
+  @Override
+  protected void configureTest() throws Exception {
+    generate.addContent(PATH, SIZE);
+  }
+
+  public void testProgressEventsAreCoalescedByBytes() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.progressBytes", 16 * 1024);
+    RecordingTransferListener listener = download();
+
+    assertEquals(SIZE, dataLength(listener));
+    assertTrue(listener.getProgressEvents().size() + " events", listener.getProgressEvents().size() <= SIZE / (16 * 1024));
+  }
+
+  public void testProgressEventsAreCoalescedByMoreBytesThanABufferHolds() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.progressBytes", 128 * 1024);
+    RecordingTransferListener listener = download();
+
+    assertEquals(SIZE, dataLength(listener));
+    assertEquals(SIZE / (128 * 1024), listener.getProgressEvents().size());
+  }
+
+  public void testProgressEventsAreThrottledByTime() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.progressBytes", 0);
+    session().setConfigProperty("aether.connector.okhttp.progressInterval", 60 * 1000);
+    RecordingTransferListener listener = download();
+
+    // the download takes far less than the interval, the whole of it is reported once it is done, without its data
+    assertEquals(1, listener.getProgressEvents().size());
+    assertEquals(SIZE, listener.getProgressEvents().get(0).getTransferredBytes());
+    assertEquals(0, dataLength(listener));
+  }
+
+  public void testEveryChunkIsReportedWithoutCoalescing() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.progressBytes", 0);
+    RecordingTransferListener listener = download();
+
+    assertEquals(SIZE, dataLength(listener));
+    assertTrue(listener.getProgressEvents().size() + " events", listener.getProgressEvents().size() > SIZE / (64 * 1024));
+  }
+
+  public void testCoalescedEventsAllocateLess() throws Exception {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean) || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+      return; // can't measure on this JVM
+    }
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+    long thread = Thread.currentThread().getId();
+
+    generate.addContent(PATH, 4 * 1024 * 1024);
+    // the listener reads the data of the events so that their allocation can't be optimized away
+    final AtomicLong transferred = new AtomicLong();
+    TransferListener listener = new AbstractTransferListener() {
+      @Override
+      public void transferProgressed(TransferEvent event) {
+        transferred.addAndGet(event.getDataBuffer().remaining());
+      }
+    };
+
+    // a single download runs on the calling thread, so its allocations are the ones of this thread
+    session().setConfigProperty("aether.connector.okhttp.progressBytes", 0);
+    download(listener);
+    long before = threads.getThreadAllocatedBytes(thread);
+    for (int i = 0; i < 3; i++) {
+      download(listener);
+    }
+    long uncoalesced = threads.getThreadAllocatedBytes(thread) - before;
+
+    // connectors are cached in the session data
+    connector().close();
+    session().setData(new DefaultSessionData());
+    session().setConfigProperty("aether.connector.okhttp.progressBytes", 64 * 1024);
+    connector(true);
+    download(listener);
+    before = threads.getThreadAllocatedBytes(thread);
+    for (int i = 0; i < 3; i++) {
+      download(listener);
+    }
+    long coalesced = threads.getThreadAllocatedBytes(thread) - before;
+
+    assertEquals(8L * 4 * 1024 * 1024, transferred.get());
+    assertTrue("coalesced events allocated " + coalesced + " bytes, uncoalesced " + uncoalesced + " bytes", coalesced < uncoalesced);
+  }
+
+  private RecordingTransferListener download() throws Exception {
+    RecordingTransferListener listener = new RecordingTransferListener();
+    download(listener);
+    return listener;
+  }
+
+  private void download(TransferListener listener) throws Exception {
+    File f = TestFileUtils.createTempFile("");
+    ArtifactDownload down = new ArtifactDownload(artifact(), null, f, RepositoryPolicy.CHECKSUM_POLICY_IGNORE);
+    down.setListener(listener);
+    connector().get(Arrays.asList(down), null);
+    assertNull(String.valueOf(down.getException()), down.getException());
+  }
+
+  private static long dataLength(RecordingTransferListener listener) {
+    long length = 0;
+    for (TransferEvent event : listener.getProgressEvents()) {
+      length += event.getDataBuffer().remaining();
+    }
+    return length;
+  }
+}
@@ -72,7 +72,7 @@ public class RecordingTransferListener implements TransferListener {
   private TransferEvent deepClone(TransferEvent event) {
     TransferEvent.Builder builder =
         new TransferEvent.Builder(event.getSession(), event.getResource());
-    builder.setType(event.getType()).setRequestType(event.getRequestType());
+    builder.setType(event.getType()).setRequestType(event.getRequestType()).setTransferredBytes(event.getTransferredBytes());
     builder.setException(event.getException());
     ByteBuffer buffer = event.getDataBuffer();
     if (buffer != null) {
@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector.test.suite;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+
+import io.takari.aether.client.RetryPolicy;
+import junit.framework.TestCase;
+
+public class RetryPolicyTest extends TestCase {
+
+  public void testBudgetIsEarnedBackByAnsweredRequests() {
+    RetryPolicy policy = new RetryPolicy(4, 2, 3, 0, 0, 0, 1);
+    assertEquals(0, policy.getDelay(503, null, 1));
+    assertEquals(-1, policy.getDelay(503, null, 1));
+
+    // neither throttled nor failed requests earn anything back
+    for (int i = 0; i < 10; i++) {
+      policy.answered(503);
+      policy.answered(500);
+    }
+    assertEquals(-1, policy.getDelay(503, null, 1));
+
+    for (int i = 0; i < 10; i++) {
+      policy.answered(200);
+    }
+    assertEquals(0, policy.getDelay(503, null, 1));
+    assertEquals(-1, policy.getDelay(503, null, 1));
+  }
+
+  public void testFailedConnectionIsRetriedWithoutBudget() {
+    RetryPolicy policy = new RetryPolicy(4, 2, 3, 0, 0, 0, 0);
+    assertEquals(0, policy.getDelay(new ConnectException(), 1));
+    assertEquals(-1, policy.getDelay(new ConnectException(), 2));
+    assertEquals(-1, policy.getDelay(new SocketTimeoutException(), 1));
+    assertEquals(-1, RetryPolicy.NONE.getDelay(new ConnectException(), 1));
+  }
+}
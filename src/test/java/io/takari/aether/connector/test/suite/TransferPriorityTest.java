@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector.test.suite;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.internal.test.util.TestFileUtils;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.spi.connector.ArtifactDownload;
+import org.eclipse.aether.spi.connector.MetadataDownload;
+
+import io.takari.aether.connector.test.suite.server.Pause;
+import io.takari.aether.connector.test.suite.server.Record;
+import io.tesla.webserver.WebServer;
+
+public class TransferPriorityTest extends AetherTestCase {
+
+  private final Record record = new Record();
+
+  @Override
+  protected void configureServer(WebServer server) {
+    // slow enough for both threads to send their requests before either is done
+    addBehaviour("/repo/*", record, new Pause(200), generate, expect, provide);
+  }
+
+  @Override
+  protected void configureTest() throws Exception {
+    session().setConfigProperty("aether.connector.basic.threads", 2);
+  }
+
+  public void testMetadataAndLargeArtifactsStartFirst() throws Exception {
+    List<ArtifactDownload> downloads = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      addDelivery("gid/aid/" + i + "/aid-" + i + ".pom", "pom " + i);
+      downloads.add(download(new DefaultArtifact("gid", "aid", "", "pom", String.valueOf(i))));
+    }
+    addDelivery("gid/aid/1/aid-1.zip", "zip");
+    downloads.add(download(new DefaultArtifact("gid", "aid", "", "zip", "1")));
+    addDelivery("gid/aid/version/maven-metadata.xml", "metadata");
+    MetadataDownload metadata = new MetadataDownload(metadata(), null, new File(TestFileUtils.createTempDir(), "maven-metadata.xml"), RepositoryPolicy.CHECKSUM_POLICY_IGNORE);
+
+    connector().get(downloads, Arrays.asList(metadata));
+
+    assertNull(String.valueOf(metadata.getException()), metadata.getException());
+    for (ArtifactDownload download : downloads) {
+      assertNull(String.valueOf(download.getException()), download.getException());
+    }
+    // started at once on the two threads, the record lists the latest request first
+    List<String> requests = record.getRequests();
+    assertEquals(requests.toString(), new HashSet<>(Arrays.asList("GET /repo/gid/aid/version/maven-metadata.xml", "GET /repo/gid/aid/1/aid-1.zip")),
+        new HashSet<>(requests.subList(requests.size() - 2, requests.size())));
+  }
+
+  private static ArtifactDownload download(DefaultArtifact artifact) throws Exception {
+    File file = new File(TestFileUtils.createTempDir(), artifact.getArtifactId() + "-" + artifact.getVersion() + "." + artifact.getExtension());
+    return new ArtifactDownload(artifact, null, file, RepositoryPolicy.CHECKSUM_POLICY_IGNORE);
+  }
+}
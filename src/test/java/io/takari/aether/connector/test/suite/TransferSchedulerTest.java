@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector.test.suite;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.internal.test.util.TestFileUtils;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.spi.connector.ArtifactDownload;
+import org.eclipse.aether.spi.connector.RepositoryConnector;
+
+import io.takari.aether.connector.test.suite.server.Behaviour;
+import io.tesla.webserver.WebServer;
+
+public class TransferSchedulerTest extends AetherTestCase {
+
+  private static final int DOWNLOADS = 8;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+
+  @Override
+  protected void configureServer(WebServer server) {
+    // keeps each request around long enough for the requests to overlap
+    Behaviour concurrency = new Behaviour() {
+      @Override
+      public boolean execute(HttpServletRequest request, HttpServletResponse response, Map<Object, Object> ctx) throws Exception {
+        int n = inFlight.incrementAndGet();
+        int max;
+        while (n > (max = maxInFlight.get()) && !maxInFlight.compareAndSet(max, n)) {
+        }
+        try {
+          Thread.sleep(100);
+        } finally {
+          inFlight.decrementAndGet();
+        }
+        return true;
+      }
+    };
+    addBehaviour("/repo/*", concurrency, generate, expect, provide);
+  }
+
+  public void testTransfersToTheSameHostAreLimitedAcrossConnectors() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.maxTransfersPerHost", 3);
+    // a mirror of the repository on the same host
+    RepositoryConnector mirror = repositoryConnectorFactory.newInstance(session(), new RemoteRepository.Builder("mirror", "default", url("repo")).build());
+    try {
+      List<ArtifactDownload> downloads = downloads("a");
+      List<ArtifactDownload> mirrorDownloads = downloads("b");
+
+      Thread thread = download(mirror, mirrorDownloads);
+      connector().get(downloads, null);
+      thread.join();
+
+      assertSucceeded(downloads);
+      assertSucceeded(mirrorDownloads);
+      assertTrue("max in flight " + maxInFlight.get(), maxInFlight.get() > 1);
+      assertTrue("max in flight " + maxInFlight.get(), maxInFlight.get() <= 3);
+    } finally {
+      mirror.close();
+    }
+  }
+
+  public void testConnectorThreadsLimitTheTransfersOfTheConnector() throws Exception {
+    session().setConfigProperty("aether.connector.basic.threads", 2);
+    List<ArtifactDownload> downloads = downloads("a");
+
+    connector().get(downloads, null);
+
+    assertSucceeded(downloads);
+    assertEquals(2, maxInFlight.get());
+  }
+
+  private List<ArtifactDownload> downloads(String artifactId) throws Exception {
+    List<ArtifactDownload> downloads = new ArrayList<>();
+    for (int i = 0; i < DOWNLOADS; i++) {
+      addDelivery("gid/" + artifactId + "/" + i + "/" + artifactId + "-" + i + ".pom", artifactId + " " + i);
+      File file = new File(TestFileUtils.createTempDir(), artifactId + "-" + i + ".pom");
+      downloads.add(new ArtifactDownload(new DefaultArtifact("gid", artifactId, "", "pom", String.valueOf(i)), null, file, RepositoryPolicy.CHECKSUM_POLICY_IGNORE));
+    }
+    return downloads;
+  }
+
+  private static Thread download(final RepositoryConnector connector, final List<ArtifactDownload> downloads) {
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        connector.get(downloads, null);
+      }
+    });
+    thread.start();
+    return thread;
+  }
+
+  private static void assertSucceeded(List<ArtifactDownload> downloads) {
+    for (ArtifactDownload download : downloads) {
+      assertNull(String.valueOf(download.getException()), download.getException());
+    }
+  }
+}
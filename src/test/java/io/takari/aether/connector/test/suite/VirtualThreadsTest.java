@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2012 to original author or authors
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.takari.aether.connector.test.suite;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.internal.test.util.TestFileUtils;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.spi.connector.ArtifactDownload;
+import org.eclipse.aether.transfer.AbstractTransferListener;
+import org.eclipse.aether.transfer.TransferEvent;
+
+import io.takari.aether.connector.test.suite.server.Behaviour;
+import io.tesla.webserver.WebServer;
+
+public class VirtualThreadsTest extends AetherTestCase {
+
+  private static final int DOWNLOADS = 10;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+
+  @Override
+  protected void configureServer(WebServer server) {
+    // keeps each request around long enough for the requests to overlap
+    Behaviour concurrency = new Behaviour() {
+      @Override
+      public boolean execute(HttpServletRequest request, HttpServletResponse response, Map<Object, Object> ctx) throws Exception {
+        int n = inFlight.incrementAndGet();
+        int max;
+        while (n > (max = maxInFlight.get()) && !maxInFlight.compareAndSet(max, n)) {
+        }
+        try {
+          Thread.sleep(100);
+        } finally {
+          inFlight.decrementAndGet();
+        }
+        return true;
+      }
+    };
+    addBehaviour("/repo/*", concurrency, generate, expect, provide);
+  }
+
+  @Override
+  protected void configureTest() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.virtualThreads", true);
+    session().setConfigProperty("aether.connector.okhttp.virtualThreadPermits", 3);
+  }
+
+  public void testTransfersRunOnVirtualThreadsWithinThePermits() throws Exception {
+    Set<Thread> threads = download();
+
+    Method isVirtual = getIsVirtual();
+    assertTrue("max in flight " + maxInFlight.get(), maxInFlight.get() > 1);
+    if (isVirtual == null) {
+      // the connector falls back to the threads of the scheduler, as many of them as it usually has
+      for (Thread thread : threads) {
+        assertFalse(thread.getName(), thread.getName().contains("-virtual-"));
+      }
+      assertTrue("max in flight " + maxInFlight.get(), maxInFlight.get() <= 5);
+    } else {
+      assertEquals(DOWNLOADS, threads.size());
+      for (Thread thread : threads) {
+        assertTrue(thread.getName(), (Boolean) isVirtual.invoke(thread));
+      }
+      assertTrue("max in flight " + maxInFlight.get(), maxInFlight.get() <= 3);
+    }
+  }
+
+  public void testTransfersOnVirtualThreadsAreLimitedPerHost() throws Exception {
+    session().setConfigProperty("aether.connector.okhttp.maxTransfersPerHost", 2);
+
+    download();
+
+    assertTrue("max in flight " + maxInFlight.get(), maxInFlight.get() > 1);
+    assertTrue("max in flight " + maxInFlight.get(), maxInFlight.get() <= 2);
+  }
+
+  /**
+   * @return The threads the downloads ran on
+   */
+  private Set<Thread> download() throws Exception {
+    final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    List<ArtifactDownload> downloads = new ArrayList<>();
+    for (int i = 0; i < DOWNLOADS; i++) {
+      addDelivery("gid/aid/" + i + "/aid-" + i + ".pom", "pom " + i);
+      File file = new File(TestFileUtils.createTempDir(), "aid-" + i + ".pom");
+      ArtifactDownload download = new ArtifactDownload(new DefaultArtifact("gid", "aid", "", "pom", String.valueOf(i)), null, file, RepositoryPolicy.CHECKSUM_POLICY_IGNORE);
+      download.setListener(new AbstractTransferListener() {
+        @Override
+        public void transferInitiated(TransferEvent event) {
+          threads.add(Thread.currentThread());
+        }
+      });
+      downloads.add(download);
+    }
+
+    connector().get(downloads, null);
+
+    for (int i = 0; i < DOWNLOADS; i++) {
+      ArtifactDownload download = downloads.get(i);
+      assertNull(String.valueOf(download.getException()), download.getException());
+      GetTest.assertContent("pom " + i, download.getFile());
+    }
+    return threads;
+  }
+
+  private static Method getIsVirtual() {
+    try {
+      return Thread.class.getMethod("isVirtual");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+}
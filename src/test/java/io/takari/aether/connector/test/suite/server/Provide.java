@@ -39,7 +39,7 @@ import org.eclipse.jetty.util.log.Log;
 public class Provide
     implements Behaviour
 {
-    private static final Pattern RANGE = Pattern.compile("bytes=([0-9]+)-");
+    private static final Pattern RANGE = Pattern.compile("bytes=([0-9]+)-([0-9]*)");
 
     private final Map<String, byte[]> db = new ConcurrentHashMap<String, byte[]>();
 
@@ -65,13 +65,18 @@ public class Provide
             }
 
             int lowerBound = 0;
+            int upperBound = ba.length - 1;
 
             String range = request.getHeader("Range");
             if (range != null && range.matches(RANGE.pattern())) {
               Matcher m = RANGE.matcher(range);
               m.matches();
               lowerBound = Integer.parseInt(m.group(1));
+              if (!m.group(2).isEmpty()) {
+                upperBound = Math.min(upperBound, Integer.parseInt(m.group(2)));
+              }
             }
+            boolean partial = lowerBound > 0 || upperBound < ba.length - 1;
             
             //
             // We need to response correctly. Something like the following:
@@ -82,10 +87,13 @@ public class Provide
             // Accept-Ranges: bytes
             // Content-Range: bytes 100-64656926/64656927
             //                        
-            response.setStatus((lowerBound > 0) ? HttpURLConnection.HTTP_PARTIAL : HttpURLConnection.HTTP_OK);
+            response.setStatus(partial ? HttpURLConnection.HTTP_PARTIAL : HttpURLConnection.HTTP_OK);
             response.setHeader("Accept-Ranges", "bytes");
+            if (partial) {
+              response.setHeader("Content-Range", "bytes " + lowerBound + "-" + upperBound + "/" + ba.length);
+            }
             response.setContentType( "application/octet-stream" );
-            int length = ba.length - lowerBound;            
+            int length = upperBound + 1 - lowerBound;
             // 
             // content:
             // 0123456789
@@ -104,7 +112,7 @@ public class Provide
             response.setContentLength( length );
 
             ServletOutputStream out = response.getOutputStream();
-            for ( int i = lowerBound; i < ba.length; i++ )
+            for ( int i = lowerBound; i <= upperBound; i++ )
             {
                 out.write( ba[i] );
                 out.flush();
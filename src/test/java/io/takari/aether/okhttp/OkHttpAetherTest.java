@@ -7,10 +7,16 @@
  */
 package io.takari.aether.okhttp;
 
+import io.takari.aether.connector.VirtualThreadExecutorTest;
 import io.takari.aether.connector.test.mockwebserver.AetherMockWebserverConnectorTest;
+import io.takari.aether.connector.test.suite.AdaptiveTransfersTest;
 import io.takari.aether.connector.test.suite.AetherConnectorFactoryTest;
 import io.takari.aether.connector.test.suite.AetherConnectorTest;
+import io.takari.aether.connector.test.suite.AsyncDownloadTest;
+import io.takari.aether.connector.test.suite.BufferPoolTest;
+import io.takari.aether.connector.test.suite.ChecksumAlgorithmsTest;
 import io.takari.aether.connector.test.suite.ConcurrentDownloadTest;
+import io.takari.aether.connector.test.suite.FileLockTest;
 import io.takari.aether.connector.test.suite.GetAuthSslTest;
 import io.takari.aether.connector.test.suite.GetAuthTest;
 import io.takari.aether.connector.test.suite.GetAuthWithNonAsciiCredentialsTest;
@@ -21,10 +27,14 @@ import io.takari.aether.connector.test.suite.GetProxySslTest;
 import io.takari.aether.connector.test.suite.GetProxyTest;
 import io.takari.aether.connector.test.suite.GetRedirectTest;
 import io.takari.aether.connector.test.suite.GetRetryTest;
+import io.takari.aether.connector.test.suite.GetSegmentedTest;
 import io.takari.aether.connector.test.suite.GetSslTest;
 import io.takari.aether.connector.test.suite.GetStutteringTest;
 import io.takari.aether.connector.test.suite.GetTest;
 import io.takari.aether.connector.test.suite.InvalidCredentialsTest;
+import io.takari.aether.connector.test.suite.MultiOriginTest;
+import io.takari.aether.connector.test.suite.NotFoundCacheTest;
+import io.takari.aether.connector.test.suite.ProgressEventsTest;
 import io.takari.aether.connector.test.suite.PutAuthSslTest;
 import io.takari.aether.connector.test.suite.PutAuthTest;
 import io.takari.aether.connector.test.suite.PutAuthWithNonAsciiCredentialsTest;
@@ -32,7 +42,11 @@ import io.takari.aether.connector.test.suite.PutProxyTest;
 import io.takari.aether.connector.test.suite.PutSslTest;
 import io.takari.aether.connector.test.suite.PutTest;
 import io.takari.aether.connector.test.suite.RestartDownloadWithClientFailureTest;
+import io.takari.aether.connector.test.suite.RetryPolicyTest;
 import io.takari.aether.connector.test.suite.TimeoutTest;
+import io.takari.aether.connector.test.suite.TransferPriorityTest;
+import io.takari.aether.connector.test.suite.TransferSchedulerTest;
+import io.takari.aether.connector.test.suite.VirtualThreadsTest;
 import io.takari.aether.connector.test.suite.WagonTest;
 import junit.framework.TestSuite;
 
@@ -68,6 +82,9 @@ public class OkHttpAetherTest extends InjectedTestCase {
     suite.addTestSuite(GetRetryTest.class);
     suite.addTestSuite(RestartDownloadWithClientFailureTest.class);    
     suite.addTestSuite(GetStutteringTest.class);
+    suite.addTestSuite(GetSegmentedTest.class);
+    suite.addTestSuite(ChecksumAlgorithmsTest.class);
+    suite.addTestSuite(ProgressEventsTest.class);
     //
     // PUT
     //
@@ -97,8 +114,19 @@ public class OkHttpAetherTest extends InjectedTestCase {
     suite.addTestSuite(WagonTest.class);
 
     // bits and pieces
+    suite.addTestSuite(AdaptiveTransfersTest.class);
     suite.addTestSuite(AetherConnectorFactoryTest.class);
+    suite.addTestSuite(AsyncDownloadTest.class);
+    suite.addTestSuite(BufferPoolTest.class);
     suite.addTestSuite(ConcurrentDownloadTest.class);
+    suite.addTestSuite(FileLockTest.class);
+    suite.addTestSuite(MultiOriginTest.class);
+    suite.addTestSuite(NotFoundCacheTest.class);
+    suite.addTestSuite(RetryPolicyTest.class);
+    suite.addTestSuite(TransferPriorityTest.class);
+    suite.addTestSuite(TransferSchedulerTest.class);
+    suite.addTestSuite(VirtualThreadExecutorTest.class);
+    suite.addTestSuite(VirtualThreadsTest.class);
 
     return suite;
   }